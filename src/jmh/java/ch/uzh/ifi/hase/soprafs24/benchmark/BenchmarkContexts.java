@@ -0,0 +1,77 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.Application;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.TokenConverter;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application without a web server, or with one on a random port,
+ * on the embedded in-memory H2 and seeds it with users for the benchmarks.
+ */
+final class BenchmarkContexts {
+
+  private static final int SEED_BATCH = 1000;
+
+  private BenchmarkContexts() {
+  }
+
+  static ConfigurableApplicationContext start(String... properties) {
+    return new SpringApplicationBuilder(Application.class)
+        .web(WebApplicationType.NONE)
+        .logStartupInfo(false)
+        .properties("logging.level.root=WARN", "spring.h2.console.enabled=false")
+        .properties(properties)
+        .run();
+  }
+
+  static ConfigurableApplicationContext startServer(String... properties) {
+    return new SpringApplicationBuilder(Application.class)
+        .web(WebApplicationType.SERVLET)
+        .logStartupInfo(false)
+        .properties("logging.level.root=WARN", "spring.h2.console.enabled=false", "server.port=0")
+        .properties(properties)
+        .run();
+  }
+
+  /**
+   * Replaces all users by count users named name0, name1, ... with username
+   * usernameN, token token(N) and the given password hash.
+   */
+  static List<Long> seedUsers(UserRepository userRepository, int count, String passwordHash) {
+    userRepository.deleteAll();
+    List<Long> ids = new ArrayList<>(count);
+    List<User> batch = new ArrayList<>(SEED_BATCH);
+    for (int i = 0; i < count; i++) {
+      User user = new User();
+      user.setName("name" + i);
+      user.setUsername("username" + i);
+      user.setPassword(passwordHash);
+      user.setToken(token(i));
+      user.setStatus(UserStatus.OFFLINE);
+      user.setCreationDate(Instant.now());
+      batch.add(user);
+      if (batch.size() == SEED_BATCH || i == count - 1) {
+        for (User saved : userRepository.saveAll(batch)) {
+          ids.add(saved.getId());
+        }
+        batch.clear();
+      }
+    }
+    return ids;
+  }
+
+  // the token of the seeded user n
+  static String token(long n) {
+    return TokenConverter.encode(ByteBuffer.allocate(TokenConverter.TOKEN_BYTES).putLong(8, n).array());
+  }
+}
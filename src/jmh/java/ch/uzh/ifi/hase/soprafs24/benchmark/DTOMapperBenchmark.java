@@ -0,0 +1,63 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping a user entity or a UserSummary to the DTO returned by the
+ * API, without the query (see UserReadPathBenchmark).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DTOMapperBenchmark {
+
+  private User user;
+
+  private UserSummary summary;
+
+  @Setup
+  public void setup() {
+    user = new User();
+    user.setId(1L);
+    user.setName("name");
+    user.setUsername("username");
+    user.setPassword("password");
+    user.setToken("token");
+    user.setStatus(UserStatus.ONLINE);
+    user.setCreationDate(Instant.parse("2025-03-03T09:00:00Z"));
+    user.setBirthday(LocalDate.of(2000, 1, 1));
+    summary = new UserSummary(1L, "username", Instant.parse("2025-03-03T09:00:00Z"), LocalDate.of(2000, 1, 1),
+        UserStatus.ONLINE, 1L);
+  }
+
+  @Benchmark
+  public UserGetDTO convertEntityToUserGetDTO() {
+    return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+  }
+
+  @Benchmark
+  public UserGetDTO convertSummaryToUserGetDTO() {
+    return DTOMapper.INSTANCE.convertSummaryToUserGetDTO(summary);
+  }
+}
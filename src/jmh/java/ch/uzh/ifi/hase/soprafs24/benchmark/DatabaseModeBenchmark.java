@@ -0,0 +1,107 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UserCredentials;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
+import ch.uzh.ifi.hase.soprafs24.service.PasswordHasher;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (sample mode, see the p0.99 line) of reads and logins
+ * on the in-memory H2 of the default configuration against the database file
+ * and pool of the prod profile, 4 threads at once. The user cache is turned
+ * off so every read reaches the database; logins write the ONLINE status, so
+ * the file mode also shows the cost of committing to disk. The password hash
+ * cost is low, LoginBenchmark measures hashing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class DatabaseModeBenchmark {
+
+  private static final int TABLE_SIZE = 10000;
+
+  private static final int PAGE_SIZE = 20;
+
+  @Param({"mem", "file"})
+  public String database;
+
+  private Path dataDirectory;
+
+  private ConfigurableApplicationContext context;
+
+  private UserService userService;
+
+  private List<Long> ids;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    if ("file".equals(database)) {
+      dataDirectory = Files.createTempDirectory("users-benchmark");
+      context = BenchmarkContexts.start("users.password.iterations=1000", "users.cache.max-size=0",
+          "spring.profiles.active=prod",
+          "users.db.path=" + dataDirectory.resolve("users").toAbsolutePath(),
+          "users.db.password=password");
+    }
+    else {
+      context = BenchmarkContexts.start("users.password.iterations=1000", "users.cache.max-size=0");
+    }
+    userService = context.getBean(UserService.class);
+    String passwordHash = context.getBean(PasswordHasher.class).hash("password");
+    ids = BenchmarkContexts.seedUsers(context.getBean(UserRepository.class), TABLE_SIZE, passwordHash);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    context.close();
+    if (dataDirectory != null) {
+      FileSystemUtils.deleteRecursively(dataDirectory);
+    }
+  }
+
+  @Benchmark
+  public UserSummary getUserById() {
+    return userService.getUserById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+  }
+
+  @Benchmark
+  public List<UserSummary> getUserPage() {
+    return userService.getUserPage(ids.get(ThreadLocalRandom.current().nextInt(ids.size() - PAGE_SIZE)), PAGE_SIZE);
+  }
+
+  @Benchmark
+  public UserCredentials logInUser() {
+    LoginPostDTO login = new LoginPostDTO();
+    login.setUsername("name" + ThreadLocalRandom.current().nextInt(TABLE_SIZE));
+    login.setPassword("password");
+    return userService.logInUser(login);
+  }
+}
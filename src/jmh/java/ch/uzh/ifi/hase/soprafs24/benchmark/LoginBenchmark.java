@@ -0,0 +1,72 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserCredentials;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login throughput per password hash cost. Several threads log in at once,
+ * so the result also shows the limit set by users.password.threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class LoginBenchmark {
+
+  @Param({"10000", "100000", "310000", "600000"})
+  public int iterations;
+
+  private ConfigurableApplicationContext context;
+
+  private UserService userService;
+
+  private LoginPostDTO login;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkContexts.start("users.password.iterations=" + iterations);
+    userService = context.getBean(UserService.class);
+
+    User user = new User();
+    user.setName("name");
+    user.setUsername("username");
+    user.setPassword("password");
+    userService.createUser(user);
+
+    login = new LoginPostDTO();
+    login.setUsername("name");
+    login.setPassword("password");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public UserCredentials logInUser() {
+    return userService.logInUser(login);
+  }
+}
@@ -0,0 +1,87 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.service.OnlineUsers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login storm against the online set: 8 threads log random users in and
+ * out, one in ten operations reads the count. OnlineUsers against a set
+ * guarded by a single lock, as a baseline for how much the lock-free
+ * structures gain. Run with -t 1, 2, 4, 8 to see the scaling with cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class OnlineUsersBenchmark {
+
+  @Param({"100000"})
+  public int users;
+
+  private OnlineUsers onlineUsers;
+
+  private final Set<Long> lockedSet = new HashSet<>();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    onlineUsers = new OnlineUsers(new SimpleMeterRegistry());
+    onlineUsers.markLoaded();
+  }
+
+  @Benchmark
+  public long onlineUsers() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long id = random.nextInt(users);
+    int operation = random.nextInt(10);
+    if (operation == 0) {
+      return onlineUsers.count();
+    }
+    if (operation % 2 == 0) {
+      onlineUsers.setOnline(id);
+    }
+    else {
+      onlineUsers.setOffline(id);
+    }
+    return id;
+  }
+
+  @Benchmark
+  public long lockedSet() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long id = random.nextInt(users);
+    int operation = random.nextInt(10);
+    synchronized (lockedSet) {
+      if (operation == 0) {
+        return lockedSet.size();
+      }
+      if (operation % 2 == 0) {
+        lockedSet.add(id);
+      }
+      else {
+        lockedSet.remove(id);
+      }
+    }
+    return id;
+  }
+}
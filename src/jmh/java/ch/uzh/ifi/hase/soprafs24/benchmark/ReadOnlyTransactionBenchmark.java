@@ -0,0 +1,88 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of a page of 100 users in read-only against read-write
+ * transactions, 8 threads at once. In a read-only transaction Hibernate
+ * keeps no dirty-checking snapshots of the loaded entities and skips the
+ * flush on commit, which shows in entities; summaries loads no entities
+ * and shows what is left, the read-only connection. Run with
+ * -PjmhProfilers=gc for the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ReadOnlyTransactionBenchmark {
+
+  private static final int TABLE_SIZE = 10000;
+
+  private static final int PAGE_SIZE = 100;
+
+  @Param({"true", "false"})
+  public boolean readOnly;
+
+  private ConfigurableApplicationContext context;
+
+  private UserRepository userRepository;
+
+  private TransactionTemplate transaction;
+
+  private List<Long> ids;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkContexts.start();
+    userRepository = context.getBean(UserRepository.class);
+    ids = BenchmarkContexts.seedUsers(userRepository, TABLE_SIZE, "password");
+    transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    transaction.setReadOnly(readOnly);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public List<User> entities() {
+    return transaction.execute(status -> userRepository.findAllById(randomPage()));
+  }
+
+  @Benchmark
+  public List<UserSummary> summaries() {
+    return transaction.execute(status -> userRepository.findSummariesByIdIn(randomPage()));
+  }
+
+  private List<Long> randomPage() {
+    int from = ThreadLocalRandom.current().nextInt(ids.size() - PAGE_SIZE);
+    return ids.subList(from, from + PAGE_SIZE);
+  }
+}
@@ -0,0 +1,80 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.service.TokenGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation rate with the striped DRBGs of TokenGenerator against
+ * UUID.randomUUID on 4 threads, and the latency of a token lookup in the
+ * database (findSummaryByToken on the binary token index).
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBenchmark {
+
+  @Param({"10000"})
+  public int tableSize;
+
+  private ConfigurableApplicationContext context;
+
+  private TokenGenerator tokenGenerator;
+
+  private UserRepository userRepository;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkContexts.start();
+    tokenGenerator = context.getBean(TokenGenerator.class);
+    userRepository = context.getBean(UserRepository.class);
+    BenchmarkContexts.seedUsers(userRepository, tableSize, "password");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Threads(4)
+  public String newToken() {
+    return tokenGenerator.newToken();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Threads(4)
+  public String randomUuid() {
+    return UUID.randomUUID().toString();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public Optional<UserSummary> findSummaryByToken() {
+    return userRepository.findSummaryByToken(BenchmarkContexts.token(ThreadLocalRandom.current().nextInt(tableSize)));
+  }
+}
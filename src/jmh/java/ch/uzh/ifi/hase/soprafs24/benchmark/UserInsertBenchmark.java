@@ -0,0 +1,101 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inserted users per second, with ids reserved one at a time (incrementSize
+ * 1, a sequence call per user, as before ids were allocated in blocks) and
+ * in blocks. saveAll persists through the EntityManager in one transaction,
+ * insertAll is the JDBC batch of the bulk import. The table grows during the
+ * run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserInsertBenchmark {
+
+  private static final int USERS_PER_INVOCATION = 100;
+
+  @Param({"1", "50", "500"})
+  public int incrementSize;
+
+  private ConfigurableApplicationContext context;
+
+  private UserRepository userRepository;
+
+  private final AtomicLong created = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    // the afterMigrate callback in db/benchmark sets the sequence to the block size before Hibernate starts
+    context = BenchmarkContexts.start(
+        "spring.jpa.properties.users.id.increment-size=" + incrementSize,
+        "spring.jpa.properties.users.id.optimizer=" + (incrementSize == 1 ? "none" : "pooled-lo"),
+        "spring.flyway.locations=classpath:db/migration,classpath:db/benchmark",
+        "spring.flyway.placeholders.idIncrementSize=" + incrementSize);
+    userRepository = context.getBean(UserRepository.class);
+    userRepository.deleteAll();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(USERS_PER_INVOCATION)
+  public List<User> saveAll() {
+    return userRepository.saveAll(newUsers());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(USERS_PER_INVOCATION)
+  public List<User> insertAll() {
+    List<User> users = newUsers();
+    userRepository.insertAll(users);
+    return users;
+  }
+
+  private List<User> newUsers() {
+    List<User> users = new ArrayList<>(USERS_PER_INVOCATION);
+    Instant creationDate = Instant.now();
+    for (int i = 0; i < USERS_PER_INVOCATION; i++) {
+      long n = created.incrementAndGet();
+      User user = new User();
+      user.setName("inserted" + n);
+      user.setUsername("insertedUsername" + n);
+      user.setPassword("password");
+      user.setToken(BenchmarkContexts.token(Long.MIN_VALUE + n));
+      user.setStatus(UserStatus.OFFLINE);
+      user.setCreationDate(creationDate);
+      users.add(user);
+    }
+    return users;
+  }
+}
@@ -0,0 +1,78 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one lookup by id from 1k to 1M users, which should stay flat as
+ * the table grows. getUserById goes through the UserCache, so its hit rate
+ * falls once the table outgrows users.cache.max-size; findSummaryById is
+ * the primary key query every cache miss runs. Seeding a million users
+ * takes a while before the first iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class UserLookupBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int tableSize;
+
+  private ConfigurableApplicationContext context;
+
+  private UserService userService;
+
+  private UserRepository userRepository;
+
+  private List<Long> ids;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkContexts.start();
+    userService = context.getBean(UserService.class);
+    userRepository = context.getBean(UserRepository.class);
+    // lookups by id never check the password, any hash will do
+    ids = BenchmarkContexts.seedUsers(userRepository, tableSize, "password");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public UserSummary getUserById() {
+    return userService.getUserById(randomId());
+  }
+
+  @Benchmark
+  public UserSummary findSummaryById() {
+    return userRepository.findSummaryById(randomId()).orElseThrow();
+  }
+
+  private long randomId() {
+    return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+  }
+}
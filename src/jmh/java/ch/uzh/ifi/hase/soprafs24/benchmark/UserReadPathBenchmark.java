@@ -0,0 +1,95 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading users into the DTOs returned by the API through the UserSummary
+ * projection against loading the User entity and mapping it, one user and
+ * a page of 100 at a time. Both bypass the UserCache. Run with
+ * -PjmhProfilers=gc to compare the allocation per operation as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserReadPathBenchmark {
+
+  private static final int TABLE_SIZE = 10000;
+
+  private static final int PAGE_SIZE = 100;
+
+  private ConfigurableApplicationContext context;
+
+  private UserRepository userRepository;
+
+  private List<Long> ids;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkContexts.start();
+    userRepository = context.getBean(UserRepository.class);
+    ids = BenchmarkContexts.seedUsers(userRepository, TABLE_SIZE, "password");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public UserGetDTO projection() {
+    return DTOMapper.INSTANCE.convertSummaryToUserGetDTO(userRepository.findSummaryById(randomId()).orElseThrow());
+  }
+
+  @Benchmark
+  public UserGetDTO entity() {
+    return DTOMapper.INSTANCE.convertEntityToUserGetDTO(userRepository.findById(randomId()).orElseThrow());
+  }
+
+  @Benchmark
+  public List<UserGetDTO> projectionPage() {
+    List<UserGetDTO> page = new ArrayList<>(PAGE_SIZE);
+    userRepository.findSummariesByIdIn(randomPage())
+        .forEach(summary -> page.add(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(summary)));
+    return page;
+  }
+
+  @Benchmark
+  public List<UserGetDTO> entityPage() {
+    List<UserGetDTO> page = new ArrayList<>(PAGE_SIZE);
+    userRepository.findAllById(randomPage())
+        .forEach(user -> page.add(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user)));
+    return page;
+  }
+
+  private long randomId() {
+    return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+  }
+
+  private List<Long> randomPage() {
+    int from = ThreadLocalRandom.current().nextInt(ids.size() - PAGE_SIZE);
+    return ids.subList(from, from + PAGE_SIZE);
+  }
+}
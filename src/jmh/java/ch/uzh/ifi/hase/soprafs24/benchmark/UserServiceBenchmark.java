@@ -0,0 +1,107 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserCredentials;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
+import ch.uzh.ifi.hase.soprafs24.service.PasswordHasher;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the UserService operations at different table sizes. Runs
+ * with a low password hash cost so logInUser and createUser measure the
+ * service and database work; the cost of hashing itself is measured by
+ * LoginBenchmark. createUser adds a user per invocation, so its table grows
+ * during the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+  @Param({"100", "10000"})
+  public int tableSize;
+
+  private ConfigurableApplicationContext context;
+
+  private UserService userService;
+
+  private List<Long> ids;
+
+  private LoginPostDTO login;
+
+  private String onlineToken;
+
+  private final AtomicLong created = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkContexts.start("users.password.iterations=1000");
+    userService = context.getBean(UserService.class);
+    String passwordHash = context.getBean(PasswordHasher.class).hash("password");
+    ids = BenchmarkContexts.seedUsers(context.getBean(UserRepository.class), tableSize, passwordHash);
+
+    login = new LoginPostDTO();
+    login.setUsername("name0");
+    login.setPassword("password");
+    onlineToken = userService.logInUser(login).getToken();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public User createUser() {
+    long n = created.incrementAndGet();
+    User user = new User();
+    user.setName("created" + n);
+    user.setUsername("createdUsername" + n);
+    user.setPassword("password");
+    return userService.createUser(user);
+  }
+
+  @Benchmark
+  public UserCredentials logInUser() {
+    return userService.logInUser(login);
+  }
+
+  @Benchmark
+  public boolean authenticateUser() {
+    return userService.authenticateUser(onlineToken);
+  }
+
+  @Benchmark
+  public UserSummary getUserById() {
+    return userService.getUserById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+  }
+
+  @Benchmark
+  public List<UserSummary> getUsers() {
+    return userService.getUsers();
+  }
+}
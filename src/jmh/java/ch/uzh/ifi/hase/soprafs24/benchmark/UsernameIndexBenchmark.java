@@ -0,0 +1,106 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.service.UsernameIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (sample mode, see the p0.99 line) of prefix searches
+ * in the UsernameIndex at a million users, with and without a status filter,
+ * while other threads search as well. scan filters a plain list the way
+ * clients filtered GET /users before, for comparison. Only the index is
+ * measured, without Spring or the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(4)
+public class UsernameIndexBenchmark {
+
+  private static final int LIMIT = 10;
+
+  @Param({"1000000"})
+  public int users;
+
+  // 2 letters match about users / 676 names, 3 letters about users / 17576
+  @Param({"2", "3"})
+  public int prefixLength;
+
+  private UsernameIndex index;
+
+  private List<String> usernames;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    index = new UsernameIndex(new SimpleMeterRegistry());
+    usernames = new ArrayList<>(users);
+    Random random = new Random(42);
+    for (int i = 0; i < users; i++) {
+      // random letters in front so names spread over the whole alphabet, one in ten users is online
+      String username = randomLetters(random, 6) + i;
+      index.load(i, username, i % 10 == 0 ? UserStatus.ONLINE : UserStatus.OFFLINE);
+      usernames.add(username);
+    }
+    index.markLoaded();
+  }
+
+  @Benchmark
+  public List<Long> search() {
+    return index.search(prefix(), null, LIMIT);
+  }
+
+  @Benchmark
+  public List<Long> searchOnline() {
+    return index.search(prefix(), UserStatus.ONLINE, LIMIT);
+  }
+
+  @Benchmark
+  public List<String> scan() {
+    String prefix = prefix();
+    List<String> matches = new ArrayList<>(LIMIT);
+    for (String username : usernames) {
+      if (username.toLowerCase(Locale.ROOT).startsWith(prefix)) {
+        matches.add(username);
+        if (matches.size() == LIMIT) {
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+
+  private String prefix() {
+    return randomLetters(ThreadLocalRandom.current(), prefixLength);
+  }
+
+  private static String randomLetters(Random random, int length) {
+    char[] letters = new char[length];
+    for (int i = 0; i < length; i++) {
+      letters[i] = (char) ('a' + random.nextInt(26));
+    }
+    return new String(letters);
+  }
+}
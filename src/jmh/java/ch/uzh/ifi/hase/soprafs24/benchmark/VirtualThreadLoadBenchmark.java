@@ -0,0 +1,128 @@
+package ch.uzh.ifi.hase.soprafs24.benchmark;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
+import ch.uzh.ifi.hase.soprafs24.service.PasswordHasher;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (sample mode, see the p0.99 line) of POST /login and
+ * GET /users/{id} on the running server with 400 concurrent connections,
+ * twice Tomcat's thread ceiling of server.tomcat.threads.max=200, with
+ * requests on virtual threads and on Tomcat's worker pool. The connection
+ * pool stays at 10 in both modes. Every response must have the expected
+ * status, a failed request ends the run with an error. The virtual mode
+ * needs a Java 21 runtime: ./gradlew jmh -PruntimeJava=21
+ * -PjmhIncludes=VirtualThreadLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dnet.bytebuddy.experimental=true")
+@Threads(400)
+public class VirtualThreadLoadBenchmark {
+
+  private static final int TABLE_SIZE = 1000;
+
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  @Param({"true", "false"})
+  public boolean virtualThreads;
+
+  private ConfigurableApplicationContext context;
+
+  private HttpClient client;
+
+  private String baseUrl;
+
+  private String authorization;
+
+  private List<Long> ids;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    // hashing is cheap and its queue holds every waiting login, so requests wait for threads and connections only
+    context = BenchmarkContexts.startServer("users.threads.virtual=" + virtualThreads,
+        "server.tomcat.threads.max=200",
+        "server.tomcat.max-connections=20000",
+        "server.tomcat.accept-count=1000",
+        "spring.datasource.hikari.maximum-pool-size=10",
+        "spring.datasource.hikari.minimum-idle=10",
+        "users.password.iterations=1000",
+        "users.password.threads=4",
+        "users.password.queue-capacity=1000");
+    String passwordHash = context.getBean(PasswordHasher.class).hash("password");
+    ids = BenchmarkContexts.seedUsers(context.getBean(UserRepository.class), TABLE_SIZE, passwordHash);
+
+    LoginPostDTO login = new LoginPostDTO();
+    login.setUsername("name0");
+    login.setPassword("password");
+    authorization = "Bearer " + context.getBean(UserService.class).logInUser(login).getToken();
+
+    baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public int login() throws IOException, InterruptedException {
+    String body = String.format("{\"username\":\"name%d\",\"password\":\"password\"}",
+        ThreadLocalRandom.current().nextInt(TABLE_SIZE));
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+        .timeout(REQUEST_TIMEOUT)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    return send(request, 202);
+  }
+
+  @Benchmark
+  public int getUserById() throws IOException, InterruptedException {
+    long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/users/" + id))
+        .timeout(REQUEST_TIMEOUT)
+        .header("Authorization", authorization)
+        .GET()
+        .build();
+    return send(request, 200);
+  }
+
+  private int send(HttpRequest request, int expectedStatus) throws IOException, InterruptedException {
+    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    if (status != expectedStatus) {
+      throw new IllegalStateException(request.method() + " " + request.uri().getPath() + " answered " + status);
+    }
+    return status;
+  }
+}
@@ -0,0 +1,3 @@
+-- Benchmark only: sets the sequence to the block size UserInsertBenchmark runs with, before
+-- Hibernate starts and compares the two
+ALTER SEQUENCE HIBERNATE_SEQUENCE INCREMENT BY ${idIncrementSize};
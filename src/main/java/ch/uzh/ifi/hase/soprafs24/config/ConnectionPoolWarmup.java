@@ -0,0 +1,69 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection Pool Warmup
+ * Borrows the configured number of connections at once while the application
+ * context starts, so the database file is opened and the pool is filled before
+ * the web server accepts requests. Otherwise the first requests pay for
+ * opening connections. Disabled unless users.db.warmup.enabled is set.
+ */
+@Component
+public class ConnectionPoolWarmup {
+
+  private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+  private final Logger log = LoggerFactory.getLogger(ConnectionPoolWarmup.class);
+
+  private final DataSource dataSource;
+
+  private final boolean enabled;
+
+  private final int connections;
+
+  @Autowired
+  public ConnectionPoolWarmup(DataSource dataSource,
+                              @Value("${users.db.warmup.enabled:false}") boolean enabled,
+                              @Value("${users.db.warmup.connections:1}") int connections) {
+    this.dataSource = dataSource;
+    this.enabled = enabled;
+    this.connections = connections;
+  }
+
+  @PostConstruct
+  public void warmUp() throws SQLException {
+    if (!enabled) {
+      return;
+    }
+    long start = System.nanoTime();
+    // hold all connections at the same time, otherwise the pool hands out the same one again
+    List<Connection> borrowed = new ArrayList<>(connections);
+    try {
+      for (int i = 0; i < connections; i++) {
+        Connection connection = dataSource.getConnection();
+        borrowed.add(connection);
+        if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+          throw new SQLException("Connection " + i + " failed validation during warmup");
+        }
+      }
+    }
+    finally {
+      for (Connection connection : borrowed) {
+        connection.close();
+      }
+    }
+    log.info("Warmed up {} database connections in {} ms", connections, (System.nanoTime() - start) / 1_000_000);
+  }
+}
@@ -0,0 +1,47 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.controller.ReactiveUserHandler;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Reactive Web Config
+ * Routes of the reactive user API, active with the reactive profile. The
+ * server runs on Netty's event loop instead of Tomcat, which would otherwise
+ * be picked because it is on the classpath for the servlet API.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+  @Bean
+  public RouterFunction<ServerResponse> userRoutes(ReactiveUserHandler handler) {
+    return RouterFunctions.route()
+        .GET("/users", handler::getUsers)
+        .POST("/users", handler::createUser)
+        .GET("/users/presence", handler::streamPresence)
+        .GET("/users/{id}", handler::getUser)
+        .PUT("/users/{id}", handler::updateUser)
+        .POST("/login", handler::login)
+        .PUT("/logout", handler::logout)
+        .GET("/me", handler::getLoggedInUser)
+        .build();
+  }
+
+  @Override
+  public void addCorsMappings(CorsRegistry registry) {
+    registry.addMapping("/**").allowedOrigins("*").allowedMethods("*");
+  }
+}
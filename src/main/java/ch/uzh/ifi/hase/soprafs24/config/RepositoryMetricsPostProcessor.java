@@ -0,0 +1,81 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository Metrics Post Processor
+ * Adds an interceptor to every Spring Data repository that records the
+ * duration of each call in the users.repository.invocations timer, tagged
+ * with repository, method and the exception thrown (or "none"). Timers are
+ * created once per method, a call costs two nanoTime reads and a map lookup.
+ */
+@Component
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+  static final String METRIC_NAME = "users.repository.invocations";
+
+  // resolved on first use, the registry is not ready while repositories are being created
+  private final ObjectProvider<MeterRegistry> meterRegistry;
+
+  public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) {
+    if (bean instanceof RepositoryFactoryBeanSupport) {
+      ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+          factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+              proxyFactory.addAdvice(new TimingInterceptor(repositoryInformation.getRepositoryInterface()))));
+    }
+    return bean;
+  }
+
+  private final class TimingInterceptor implements MethodInterceptor {
+
+    private final String repository;
+
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    TimingInterceptor(Class<?> repositoryInterface) {
+      this.repository = repositoryInterface.getSimpleName();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      long start = System.nanoTime();
+      try {
+        Object result = invocation.proceed();
+        timers.computeIfAbsent(invocation.getMethod(), method -> timer(method, "none"))
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+      }
+      catch (Throwable e) {
+        timer(invocation.getMethod(), e.getClass().getSimpleName())
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        throw e;
+      }
+    }
+
+    private Timer timer(Method method, String exception) {
+      return Timer.builder(METRIC_NAME)
+          .description("Duration of repository calls")
+          .tag("repository", repository)
+          .tag("method", method.getName())
+          .tag("exception", exception)
+          .register(meterRegistry.getObject());
+    }
+  }
+}
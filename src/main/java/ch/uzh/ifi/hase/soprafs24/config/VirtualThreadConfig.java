@@ -0,0 +1,51 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual Thread Config
+ * With users.threads.virtual=true Tomcat runs every request on a new virtual
+ * thread instead of its bounded worker pool, so requests blocked in JDBC calls
+ * no longer occupy a platform thread each. Concurrency is then limited by the
+ * connection pool, which is sized on its own. Needs a Java 21 runtime; the
+ * code is compiled for 17, so the executor is created reflectively and the
+ * application refuses to start on an older JVM. VirtualThreadLoadBenchmark
+ * loads /login and /users/{id} with more connections than Tomcat has threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "users.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+  private final ExecutorService requestExecutor = newVirtualThreadPerTaskExecutor();
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+    return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+  }
+
+  @PreDestroy
+  public void stop() {
+    requestExecutor.shutdown();
+  }
+
+  static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    }
+    catch (NoSuchMethodException e) {
+      throw new IllegalStateException("users.threads.virtual needs Java 21 or newer, running on " + Runtime.version(), e);
+    }
+    catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create the virtual thread executor", e);
+    }
+  }
+}
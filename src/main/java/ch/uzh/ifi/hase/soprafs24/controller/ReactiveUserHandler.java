@@ -0,0 +1,148 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.*;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.service.PresenceBroadcaster;
+import ch.uzh.ifi.hase.soprafs24.service.ReactiveUserService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Reactive User Handler
+ * Handles the user requests of the reactive API with the same paths, status
+ * codes and DTOs as the UserController. The routes are defined in
+ * ReactiveWebConfig. GET /users streams the users as one JSON array while
+ * they are read, so ?stream=true needs no special handling.
+ */
+@Component
+@Profile("reactive")
+public class ReactiveUserHandler {
+
+    private final ReactiveUserService userService;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final int maxPageSize;
+
+    ReactiveUserHandler(ReactiveUserService userService, PresenceBroadcaster presenceBroadcaster,
+                        @Value("${users.page.max-size:500}") int maxPageSize) {
+        this.userService = userService;
+        this.presenceBroadcaster = presenceBroadcaster;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public Mono<ServerResponse> getUsers(ServerRequest request) {
+        Optional<String> size = request.queryParam("size");
+        if (size.isPresent() && !request.queryParam("stream").filter("true"::equals).isPresent()) {
+            return getUserPage(checkPageSize(size.get()), request.queryParam("cursor").map(cursor -> parseLong(cursor, "cursor")).orElse(null));
+        }
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userService.getUsers().map(DTOMapper.INSTANCE::convertSummaryToUserGetDTO), UserGetDTO.class);
+    }
+
+    public Mono<ServerResponse> streamPresence(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(presenceBroadcaster.subscribe(), new ParameterizedTypeReference<ServerSentEvent<PresenceEventDTO>>() {
+                });
+    }
+
+    public Mono<ServerResponse> createUser(ServerRequest request) {
+        return request.bodyToMono(UserPostDTO.class)
+                .map(DTOMapper.INSTANCE::convertUserPostDTOtoEntity)
+                .flatMap(userService::createUser)
+                .flatMap(user -> ServerResponse.status(HttpStatus.CREATED)
+                        .bodyValue(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user)));
+    }
+
+    public Mono<ServerResponse> login(ServerRequest request) {
+        return request.bodyToMono(LoginPostDTO.class)
+                .flatMap(userService::logInUser)
+                .flatMap(user -> ServerResponse.status(HttpStatus.ACCEPTED)
+                        .bodyValue(DTOMapper.INSTANCE.convertCredentialsToLogoutPutDTO(user)));
+    }
+
+    public Mono<ServerResponse> logout(ServerRequest request) {
+        return request.bodyToMono(LogoutPutDTO.class)
+                .flatMap(userService::logOutUser)
+                .flatMap(loggedOut -> ServerResponse.ok().bodyValue(loggedOut));
+    }
+
+    public Mono<ServerResponse> getUser(ServerRequest request) {
+        long id = parseLong(request.pathVariable("id"), "id");
+        return userService.authenticateUser(token(request))
+                .then(userService.getUserById(id))
+                .flatMap(user -> ServerResponse.ok().bodyValue(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user)));
+    }
+
+    public Mono<ServerResponse> updateUser(ServerRequest request) {
+        long id = parseLong(request.pathVariable("id"), "id");
+        return request.bodyToMono(EditPutDTO.class)
+                .flatMap(editPutDTO -> userService.update(id, editPutDTO))
+                .then(ServerResponse.noContent().build());
+    }
+
+    public Mono<ServerResponse> getLoggedInUser(ServerRequest request) {
+        return userService.getUserByToken(token(request))
+                .flatMap(user -> ServerResponse.ok().bodyValue(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user)));
+    }
+
+    private Mono<ServerResponse> getUserPage(int size, Long cursor) {
+        return userService.getUserPage(cursor, size)
+                .collectList()
+                .flatMap(users -> {
+                    UserPageDTO userPageDTO = new UserPageDTO();
+                    userPageDTO.setUsers(users.stream().map(DTOMapper.INSTANCE::convertSummaryToUserGetDTO)
+                            .collect(Collectors.toList()));
+                    // a short page is the last one
+                    if (users.size() == size) {
+                        userPageDTO.setNextCursor(users.get(users.size() - 1).getId());
+                    }
+                    return ServerResponse.ok().bodyValue(userPageDTO);
+                });
+    }
+
+    private static String token(ServerRequest request) {
+        String authorizationHeader = request.headers().firstHeader("Authorization");
+        if (authorizationHeader == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing Authorization header");
+        }
+        return authorizationHeader.replace("Bearer ", "");
+    }
+
+    // a malformed number is the client's error, as in the MVC API
+    private static long parseLong(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("%s must be a number", name));
+        }
+    }
+
+    private int checkPageSize(String value) {
+        int size;
+        try {
+            size = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            size = 0;
+        }
+        if (size < 1 || size > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Page size must be between 1 and %d", maxPageSize));
+        }
+        return size;
+    }
+}
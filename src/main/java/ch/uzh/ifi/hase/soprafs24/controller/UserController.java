@@ -1,17 +1,39 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
-import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserCredentials;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.*;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.service.PresenceBroadcaster;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * User Controller
@@ -19,33 +41,245 @@ import java.util.List;
  * the user.
  * The controller will receive the request and delegate the execution to the
  * UserService and finally return the result.
+ * Servlet only, the reactive profile serves its routes from ReactiveWebConfig.
  */
 @RestController
+@Profile("!reactive")
 public class UserController {
 
     private final UserService userService;
-    private final UserRepository userRepository;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
+    private final int importBatchSize;
 
-    UserController(UserService userService, UserRepository userRepository) {
+    UserController(UserService userService, PresenceBroadcaster presenceBroadcaster, ObjectMapper objectMapper,
+                   @Value("${users.page.max-size:500}") int maxPageSize,
+                   @Value("${users.import.batch-size:500}") int importBatchSize) {
         this.userService = userService;
-        this.userRepository = userRepository;
+        this.presenceBroadcaster = presenceBroadcaster;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = maxPageSize;
+        this.importBatchSize = importBatchSize;
     }
 
-    @GetMapping("/users")
-    @ResponseStatus(HttpStatus.OK)
-    @ResponseBody
-    public List<UserGetDTO> getAllUsers() {
+    /**
+     * Returns all users with the version of the list as ETag. A request whose
+     * If-None-Match still matches gets a 304 before any user is loaded.
+     */
+    // the query modes of GET /users exclude each other, a request combining them matches no mapping and gets a 400
+    @GetMapping(value = "/users", params = {"!since", "!ids", "!createdFrom", "!createdTo", "!size", "stream!=true"})
+    public ResponseEntity<List<UserGetDTO>> getAllUsers(WebRequest webRequest) {
+        // read before the list, a change in between only makes the next request load it again
+        String eTag = listETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
         // fetch all users in the internal representation
-        List<User> users = userService.getUsers();
+        List<UserSummary> users = userService.getUsers();
         List<UserGetDTO> userGetDTOs = new ArrayList<>();
 
         // convert each user to the API representation
-        for (User user : users) {
-            userGetDTOs.add(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+        for (UserSummary user : users) {
+            userGetDTOs.add(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
+        }
+        return ResponseEntity.ok().eTag(eTag).body(userGetDTOs);
+    }
+
+    /**
+     * Returns only the users added or changed after the given version, the
+     * highest version among them is the one to pass next time.
+     * Versions are drawn when a row is written, not when its transaction
+     * commits, so a change with a lower version can still become visible
+     * after a higher one was returned. Clients must overlap their window:
+     * pass a since below the highest version seen (the README suggests by
+     * how much) and treat users they already have as updates, not as new.
+     */
+    @GetMapping(value = "/users", params = {"since", "!ids", "!createdFrom", "!createdTo", "!size", "!stream"})
+    public ResponseEntity<List<UserGetDTO>> getUsersChangedSince(@RequestParam long since, WebRequest webRequest) {
+        String eTag = listETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        List<UserSummary> users = userService.getUsersChangedSince(since);
+        List<UserGetDTO> userGetDTOs = new ArrayList<>(users.size());
+        for (UserSummary user : users) {
+            userGetDTOs.add(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
+        }
+        return ResponseEntity.ok().eTag(eTag).body(userGetDTOs);
+    }
+
+    /**
+     * Returns the users with the given ids in the order they were asked for,
+     * e.g. GET /users?ids=3,1,2. The caller is authenticated once for all of
+     * them. An id without a user gets an entry with found set to false
+     * instead of failing the whole request.
+     */
+    @GetMapping(value = "/users", params = {"ids", "!since", "!createdFrom", "!createdTo", "!size", "!stream"})
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public List<UserLookupDTO> getUsersByIds(@RequestParam List<Long> ids,
+                                             @RequestHeader("Authorization") String authorizationHeader) {
+        if (ids.size() > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("At most %d ids can be looked up at once", maxPageSize));
+        }
+        String token = authorizationHeader.replace("Bearer ", "");
+        userService.authenticateUser(token);
+
+        Map<Long, UserSummary> users = userService.getUsersByIds(ids);
+        List<UserLookupDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserSummary user = users.get(id);
+            UserLookupDTO lookup = new UserLookupDTO();
+            lookup.setId(id);
+            lookup.setFound(user != null);
+            if (user != null) {
+                lookup.setUser(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
+            }
+            result.add(lookup);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the users created in a period, e.g.
+     * GET /users?createdFrom=2025-03-01T00:00:00Z&createdTo=2025-04-01T00:00:00Z,
+     * from inclusive and to exclusive, oldest first.
+     */
+    @GetMapping(value = "/users", params = {"createdFrom", "createdTo", "!since", "!ids", "!size", "!stream"})
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public List<UserGetDTO> getUsersCreatedBetween(@RequestParam Instant createdFrom, @RequestParam Instant createdTo) {
+        List<UserSummary> users = userService.getUsersCreatedBetween(createdFrom, createdTo);
+        List<UserGetDTO> userGetDTOs = new ArrayList<>(users.size());
+        for (UserSummary user : users) {
+            userGetDTOs.add(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
+        }
+        return userGetDTOs;
+    }
+
+    /**
+     * Returns the users whose birthday is in the current week, Monday to
+     * Sunday, or in the week of the given day (?day=2025-03-05).
+     */
+    @GetMapping("/users/birthdays")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public List<UserGetDTO> getUsersWithBirthdayThisWeek(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        List<UserSummary> users = userService.getUsersWithBirthdayInWeekOf(day == null ? LocalDate.now() : day);
+        List<UserGetDTO> userGetDTOs = new ArrayList<>(users.size());
+        for (UserSummary user : users) {
+            userGetDTOs.add(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
         }
         return userGetDTOs;
     }
 
+    /**
+     * Returns the users who are ONLINE, ordered by id, without scanning the
+     * user table.
+     */
+    @GetMapping("/users/online")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public List<UserGetDTO> getOnlineUsers() {
+        List<UserSummary> users = userService.getOnlineUsers();
+        List<UserGetDTO> userGetDTOs = new ArrayList<>(users.size());
+        for (UserSummary user : users) {
+            userGetDTOs.add(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
+        }
+        return userGetDTOs;
+    }
+
+    @GetMapping("/users/online/count")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public long countOnlineUsers() {
+        return userService.countOnlineUsers();
+    }
+
+    /**
+     * Autocomplete: returns up to limit users whose username starts with the
+     * prefix, ignoring case, in alphabetical order, e.g.
+     * GET /users/search?prefix=an&status=ONLINE&limit=5.
+     */
+    @GetMapping("/users/search")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public List<UserGetDTO> searchUsers(@RequestParam String prefix, @RequestParam(required = false) UserStatus status,
+                                        @RequestParam(defaultValue = "10") int limit) {
+        if (prefix.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The prefix must not be empty");
+        }
+        List<UserSummary> users = userService.searchUsers(prefix, status, checkPageSize(limit));
+        List<UserGetDTO> userGetDTOs = new ArrayList<>(users.size());
+        for (UserSummary user : users) {
+            userGetDTOs.add(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
+        }
+        return userGetDTOs;
+    }
+
+    @GetMapping(value = "/users", params = {"size", "stream!=true", "!since", "!ids", "!createdFrom", "!createdTo"})
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public UserPageDTO getUserPage(@RequestParam int size, @RequestParam(required = false) Long cursor) {
+        List<UserSummary> users = userService.getUserPage(cursor, checkPageSize(size));
+        List<UserGetDTO> userGetDTOs = new ArrayList<>(users.size());
+        for (UserSummary user : users) {
+            userGetDTOs.add(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
+        }
+
+        UserPageDTO userPageDTO = new UserPageDTO();
+        userPageDTO.setUsers(userGetDTOs);
+        // a short page is the last one
+        if (users.size() == size) {
+            userPageDTO.setNextCursor(users.get(users.size() - 1).getId());
+        }
+        return userPageDTO;
+    }
+
+    /**
+     * Streams all users as one JSON array. Users are read page by page and
+     * written as soon as a page arrives, so at most one page is held in memory
+     * no matter how many users there are.
+     */
+    @GetMapping(value = "/users", params = {"stream=true", "!since", "!ids", "!createdFrom", "!createdTo"})
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@RequestParam(required = false) Integer size) {
+        int pageSize = size == null ? maxPageSize : checkPageSize(size);
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartArray();
+            Long cursor = null;
+            List<UserSummary> users;
+            do {
+                users = userService.getUserPage(cursor, pageSize);
+                for (UserSummary user : users) {
+                    generator.writeObject(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
+                }
+                generator.flush();
+                if (!users.isEmpty()) {
+                    cursor = users.get(users.size() - 1).getId();
+                }
+            } while (users.size() == pageSize);
+            generator.writeEndArray();
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Server-sent events of status changes ("presence" events with the user
+     * id and the new status), from the time of subscription on. Clients load
+     * GET /users once and then follow this stream instead of polling; after a
+     * reconnect they load the list again.
+     */
+    @GetMapping(value = "/users/presence", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<PresenceEventDTO>> streamPresence() {
+        return presenceBroadcaster.subscribe();
+    }
+
     @PostMapping("/users")
     @ResponseStatus(HttpStatus.CREATED)
     @ResponseBody
@@ -60,13 +294,71 @@ public class UserController {
         return DTOMapper.INSTANCE.convertEntityToUserGetDTO(createdUser);
     }
 
+    /**
+     * Imports users from a JSON array or from newline-delimited JSON, both
+     * of UserPostDTOs. The body is read as a stream and passed on in batches
+     * of users.import.batch-size, so an import of any size only holds one
+     * batch in memory. Users that cannot be created are reported with their
+     * position and do not stop the import; malformed JSON or a value that is
+     * not an object ends it, everything before it stays created and the result
+     * reports where it stopped.
+     */
+    @PostMapping(value = "/users/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public UserImportResultDTO importUsers(InputStream body) throws IOException {
+        UserImportResultDTO result = new UserImportResultDTO();
+        List<User> batch = new ArrayList<>(importBatchSize);
+        int index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            try {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) {
+                    token = parser.nextToken();
+                }
+                // newline-delimited JSON is a sequence of root level objects, which the parser reads as they come
+                while (token == JsonToken.START_OBJECT) {
+                    JsonNode node = objectMapper.readTree(parser);
+                    try {
+                        batch.add(DTOMapper.INSTANCE.convertUserPostDTOtoEntity(
+                                objectMapper.treeToValue(node, UserPostDTO.class)));
+                    }
+                    catch (JsonProcessingException e) {
+                        // well-formed but not a user, keep the position with a placeholder that fails validation
+                        batch.add(new User());
+                    }
+                    index++;
+                    if (batch.size() == importBatchSize) {
+                        importBatch(batch, index - batch.size(), result);
+                        batch = new ArrayList<>(importBatchSize);
+                    }
+                    token = parser.nextToken();
+                }
+                if (token != (array ? JsonToken.END_ARRAY : null)) {
+                    if (index == 0) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                "Expected a JSON array or newline-delimited JSON of users");
+                    }
+                    // earlier batches are created already, report how far the import got
+                    return skipRest(batch, index, "Not a user object, the rest of the import was skipped", result);
+                }
+            }
+            catch (JsonProcessingException e) {
+                return skipRest(batch, index, "Malformed JSON, the rest of the import was skipped", result);
+            }
+        }
+        importBatch(batch, index - batch.size(), result);
+        return result;
+    }
+
     @PostMapping("/login")
     @ResponseStatus(HttpStatus.ACCEPTED)
     @ResponseBody
     public LogoutPutDTO login(@RequestBody LoginPostDTO loginPostDTO) {
 
-        User loggedInUser = userService.logInUser(loginPostDTO);
-        return DTOMapper.INSTANCE.convertEntityToLogoutPutDTO(loggedInUser);
+        UserCredentials loggedInUser = userService.logInUser(loginPostDTO);
+        return DTOMapper.INSTANCE.convertCredentialsToLogoutPutDTO(loggedInUser);
     }
 
     @PutMapping("/logout")
@@ -76,16 +368,20 @@ public class UserController {
         return userService.logOutUser(logoutPutDTO);
     }
 
+    /**
+     * Returns the user with an ETag of its version, a matching If-None-Match
+     * is answered with 304 and no body.
+     */
     @GetMapping("/users/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    @ResponseBody
-    public UserGetDTO getUser(@PathVariable long id, @RequestHeader("Authorization") String authorizationHeader) {
+    public ResponseEntity<UserGetDTO> getUser(@PathVariable long id, @RequestHeader("Authorization") String authorizationHeader) {
         String token = authorizationHeader.replace("Bearer ", "");
         boolean authenticated = userService.authenticateUser(token);
 
         if (authenticated) {
-            User user = userService.getUserById(id);
-            return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+            UserSummary user = userService.getUserById(id);
+            return ResponseEntity.ok()
+                    .eTag(userETag(user))
+                    .body(DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user));
 
             } throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authorization failed");
     }
@@ -104,11 +400,50 @@ public class UserController {
     @ResponseBody
     public UserGetDTO getLoggedinUser(@RequestHeader("Authorization") String authorizationHeader) {
         String token = authorizationHeader.replace("Bearer ", "");
-        User user = userRepository.findByToken(token);
-        if (user == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        UserSummary user = userService.getUserByToken(token);
+        return DTOMapper.INSTANCE.convertSummaryToUserGetDTO(user);
+    }
+
+    // creates the users read so far and reports the position at which the import stopped
+    private UserImportResultDTO skipRest(List<User> batch, int index, String reason, UserImportResultDTO result) {
+        importBatch(batch, index - batch.size(), result);
+        UserImportErrorDTO error = new UserImportErrorDTO();
+        error.setIndex(index);
+        error.setReason(reason);
+        result.getErrors().add(error);
+        return result;
+    }
+
+    // creates the batch and adds its outcome to the result
+    private void importBatch(List<User> batch, int firstIndex, UserImportResultDTO result) {
+        if (batch.isEmpty()) {
+            return;
         }
-        return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+        Map<Integer, String> failures = userService.createUsers(batch);
+        for (Map.Entry<Integer, String> failure : failures.entrySet()) {
+            UserImportErrorDTO error = new UserImportErrorDTO();
+            error.setIndex(firstIndex + failure.getKey());
+            error.setUsername(batch.get(failure.getKey()).getUsername());
+            error.setReason(failure.getValue());
+            result.getErrors().add(error);
+        }
+        result.setCreated(result.getCreated() + batch.size() - failures.size());
     }
-}
 
+    private String listETag() {
+        return "\"" + userService.getUsersVersion() + "\"";
+    }
+
+    // the status is part of the tag because a buffered status change has no new version yet
+    private static String userETag(UserSummary user) {
+        return "\"" + user.getVersion() + "." + user.getStatus().ordinal() + "\"";
+    }
+
+    private int checkPageSize(int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Page size must be between 1 and %d", maxPageSize));
+        }
+        return size;
+    }
+}
@@ -0,0 +1,62 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Token Converter
+ * Tokens are 16 random bytes. They are stored as such (BINARY(16), see
+ * V5__store_tokens_as_binary.sql) and exchanged with clients as 22
+ * characters of unpadded base64url. Tokens in the UUID form used before are
+ * still accepted, they denote the same 16 bytes. A string that is no token
+ * in either form converts to null, which matches no row.
+ */
+@Converter
+public class TokenConverter implements AttributeConverter<String, byte[]> {
+
+    public static final int TOKEN_BYTES = 16;
+
+    private static final int ENCODED_LENGTH = 22;
+
+    private static final int UUID_LENGTH = 36;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String token) {
+        return decode(token);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] token) {
+        return token == null ? null : encode(token);
+    }
+
+    public static String encode(byte[] token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    // the 16 bytes of the token, or null if the string is no token
+    public static byte[] decode(String token) {
+        if (token == null) {
+            return null;
+        }
+        try {
+            if (token.length() == ENCODED_LENGTH) {
+                return Base64.getUrlDecoder().decode(token);
+            }
+            if (token.length() == UUID_LENGTH) {
+                UUID uuid = UUID.fromString(token);
+                return ByteBuffer.allocate(TOKEN_BYTES)
+                        .putLong(uuid.getMostSignificantBits())
+                        .putLong(uuid.getLeastSignificantBits())
+                        .array();
+            }
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+        return null;
+    }
+}
@@ -2,8 +2,15 @@ package ch.uzh.ifi.hase.soprafs24.entity;
 
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 
+import org.hibernate.annotations.Generated;
+import org.hibernate.annotations.GenerationTime;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
 
 /**
  * Internal User Representation
@@ -14,6 +21,8 @@ import java.io.Serializable;
  * - nullable = false -> this cannot be left empty
  * - unique = true -> this value must be unqiue across the database -> composes
  * the primary key
+ * The table itself (including its indexes) is created by the Flyway migrations
+ * in src/main/resources/db/migration, changes to this class need a migration.
  */
 @Entity
 @Table(name = "USER")
@@ -21,8 +30,11 @@ public class User implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    // ids are reserved in blocks, one sequence call per block, see UserIdGenerator
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "userIds")
+    @GenericGenerator(name = "userIds", strategy = "ch.uzh.ifi.hase.soprafs24.entity.UserIdGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "HIBERNATE_SEQUENCE"))
     private Long id;
 
     @Column(nullable = false)
@@ -35,17 +47,29 @@ public class User implements Serializable {
     private String password;
 
     @Column(nullable = false)
-    private String creationDate;
+    private Instant creationDate;
 
     @Column()
-    private String birthday;
+    private LocalDate birthday;
 
-    @Column(nullable = false, unique = true)
+    // month * 100 + day of the birthday, computed by the database for the birthday queries,
+    // see V6__store_dates_typed.sql
+    @Column(insertable = false, updatable = false)
+    private Integer birthdayMonthDay;
+
+    // 16 bytes in the database, the string form clients see in here
+    @Convert(converter = TokenConverter.class)
+    @Column(nullable = false, unique = true, length = TokenConverter.TOKEN_BYTES)
     private String token;
 
     @Column(nullable = false)
     private UserStatus status;
 
+    // assigned by the database on insert and on every update, see V3__add_user_version.sql
+    @Generated(GenerationTime.INSERT)
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Long version;
+
     public Long getId() {
         return id;
     }
@@ -94,19 +118,31 @@ public class User implements Serializable {
         this.password = password;
     }
 
-    public String getCreationDate() {
+    public Instant getCreationDate() {
         return creationDate;
     }
 
-    public void setCreationDate(String creationDate) {
+    public void setCreationDate(Instant creationDate) {
         this.creationDate = creationDate;
     }
 
-    public String getBirthday() {
+    public LocalDate getBirthday() {
         return birthday;
     }
 
-    public void setBirthday(String birthday) {
+    public void setBirthday(LocalDate birthday) {
         this.birthday = birthday;
     }
+
+    public Integer getBirthdayMonthDay() {
+        return birthdayMonthDay;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
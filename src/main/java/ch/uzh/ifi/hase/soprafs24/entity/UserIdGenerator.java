@@ -0,0 +1,74 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.jdbc.connections.spi.JdbcConnectionAccess;
+import org.hibernate.engine.jdbc.spi.JdbcServices;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * User Id Generator
+ * The sequence generator of User.id with its block size and optimizer taken
+ * from the Hibernate settings (spring.jpa.properties.users.id.*) instead of
+ * fixed annotation values. Ids are handed out from memory, the sequence is
+ * only called once per block. The block size, users.id.increment-size, must
+ * equal the INCREMENT BY of the sequence, otherwise blocks overlap and ids
+ * are handed out twice, so startup fails when they differ, also with schema
+ * validation turned off. The sequence was set to 50 by the V4 migration; its
+ * comment refers to an allocationSize on User.id, which this setting has
+ * replaced.
+ */
+public class UserIdGenerator extends SequenceStyleGenerator {
+
+    public static final String INCREMENT_SIZE_SETTING = "users.id.increment-size";
+
+    public static final String OPTIMIZER_SETTING = "users.id.optimizer";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        params.setProperty(INCREMENT_PARAM, setting(settings, INCREMENT_SIZE_SETTING, "50"));
+        params.setProperty(OPT_PARAM, setting(settings, OPTIMIZER_SETTING, "pooled"));
+        super.configure(type, params, serviceRegistry);
+        checkSequenceIncrement(serviceRegistry, params.getProperty(SEQUENCE_PARAM), getDatabaseStructure().getIncrementSize());
+    }
+
+    // runs after the Flyway migrations, a sequence the database does not have yet is left to schema validation
+    private static void checkSequenceIncrement(ServiceRegistry serviceRegistry, String sequenceName, int incrementSize) {
+        JdbcConnectionAccess connectionAccess = serviceRegistry.getService(JdbcServices.class).getBootstrapJdbcConnectionAccess();
+        try {
+            Connection connection = connectionAccess.obtainConnection();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?")) {
+                statement.setString(1, sequenceName);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next() && resultSet.getLong(1) != incrementSize) {
+                        throw new MappingException(String.format(
+                                "%s is %d but sequence %s has INCREMENT BY %d, change both together with a new migration",
+                                INCREMENT_SIZE_SETTING, incrementSize, sequenceName, resultSet.getLong(1)));
+                    }
+                }
+            }
+            finally {
+                connectionAccess.releaseConnection(connection);
+            }
+        }
+        catch (SQLException e) {
+            throw new MappingException("Could not read the increment of sequence " + sequenceName, e);
+        }
+    }
+
+    private static String setting(Map<?, ?> settings, String name, String defaultValue) {
+        Object value = settings.get(name);
+        return value == null ? defaultValue : value.toString().trim();
+    }
+}
@@ -0,0 +1,164 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.TokenConverter;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Reactive User Repository
+ * Non-blocking access to the USER table over R2DBC for the reactive API. It
+ * runs the same queries as UserRepository as plain SQL against the schema of
+ * the Flyway migrations and returns the same projections. Every method is a
+ * single statement in auto-commit mode, there are no reactive transactions.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveUserRepository {
+
+  private static final String SUMMARY = "SELECT ID, USERNAME, CREATION_DATE, BIRTHDAY, STATUS, VERSION FROM USER ";
+
+  private final DatabaseClient databaseClient;
+
+  public ReactiveUserRepository(ConnectionFactory connectionFactory) {
+    this.databaseClient = DatabaseClient.create(connectionFactory);
+  }
+
+  public Flux<UserSummary> findAllSummaries() {
+    return databaseClient.sql(SUMMARY + "ORDER BY ID")
+        .map(ReactiveUserRepository::toSummary)
+        .all();
+  }
+
+  // keyset page: the users following the given id, ordered by id
+  public Flux<UserSummary> findSummariesAfter(long id, int limit) {
+    return databaseClient.sql(SUMMARY + "WHERE ID > :id ORDER BY ID LIMIT :limit")
+        .bind("id", id)
+        .bind("limit", limit)
+        .map(ReactiveUserRepository::toSummary)
+        .all();
+  }
+
+  public Mono<UserSummary> findSummaryById(long id) {
+    return databaseClient.sql(SUMMARY + "WHERE ID = :id")
+        .bind("id", id)
+        .map(ReactiveUserRepository::toSummary)
+        .one();
+  }
+
+  // tokens are stored as bytes, see TokenConverter
+  public Mono<UserSummary> findSummaryByToken(String token) {
+    byte[] tokenBytes = TokenConverter.decode(token);
+    if (tokenBytes == null) {
+      return Mono.empty();
+    }
+    return databaseClient.sql(SUMMARY + "WHERE TOKEN = :token")
+        .bind("token", tokenBytes)
+        .map(ReactiveUserRepository::toSummary)
+        .one();
+  }
+
+  public Mono<UserCredentials> findCredentialsByName(String name) {
+    return databaseClient.sql("SELECT ID, PASSWORD, TOKEN FROM USER WHERE NAME = :name")
+        .bind("name", name)
+        .map(row -> new UserCredentials(row.get("ID", Long.class), row.get("PASSWORD", String.class),
+            TokenConverter.encode(row.get("TOKEN", byte[].class))))
+        .first();
+  }
+
+  public Mono<Boolean> existsByUsername(String username) {
+    return databaseClient.sql("SELECT 1 FROM USER WHERE USERNAME = :username")
+        .bind("username", username)
+        .map(row -> Boolean.TRUE)
+        .first()
+        .hasElement();
+  }
+
+  /**
+   * Inserts the user with an id drawn from the sequence Hibernate uses, so
+   * ids from both APIs never collide: the value drawn is the top of a block
+   * of ids Hibernate will not hand out. Returns the new id.
+   */
+  public Mono<Long> insert(User user) {
+    return databaseClient.sql("SELECT NEXT VALUE FOR HIBERNATE_SEQUENCE")
+        .map(row -> row.get(0, Long.class))
+        .one()
+        .flatMap(id -> {
+          DatabaseClient.GenericExecuteSpec insert = databaseClient.sql(
+                  "INSERT INTO USER (ID, NAME, USERNAME, PASSWORD, CREATION_DATE, BIRTHDAY, TOKEN, STATUS) "
+                  + "VALUES (:id, :name, :username, :password, :creationDate, :birthday, :token, :status)")
+              .bind("id", id)
+              .bind("name", user.getName())
+              .bind("username", user.getUsername())
+              .bind("password", user.getPassword())
+              .bind("creationDate", toTimestamp(user.getCreationDate()))
+              .bind("token", TokenConverter.decode(user.getToken()))
+              .bind("status", user.getStatus().ordinal());
+          insert = user.getBirthday() == null ? insert.bindNull("birthday", LocalDate.class)
+              : insert.bind("birthday", user.getBirthday());
+          return insert.fetch().rowsUpdated().thenReturn(id);
+        });
+  }
+
+  // the following return the number of updated rows
+
+  public Mono<Integer> updateStatusById(long id, UserStatus status) {
+    return databaseClient.sql("UPDATE USER SET STATUS = :status WHERE ID = :id")
+        .bind("status", status.ordinal())
+        .bind("id", id)
+        .fetch()
+        .rowsUpdated();
+  }
+
+  public Mono<Integer> updatePasswordById(long id, String password) {
+    return databaseClient.sql("UPDATE USER SET PASSWORD = :password WHERE ID = :id")
+        .bind("password", password)
+        .bind("id", id)
+        .fetch()
+        .rowsUpdated();
+  }
+
+  public Mono<Integer> updateUsername(long id, String username) {
+    return databaseClient.sql("UPDATE USER SET USERNAME = :username WHERE ID = :id")
+        .bind("username", username)
+        .bind("id", id)
+        .fetch()
+        .rowsUpdated();
+  }
+
+  public Mono<Integer> updateUsernameAndBirthday(long id, String username, LocalDate birthday) {
+    return databaseClient.sql("UPDATE USER SET USERNAME = :username, BIRTHDAY = :birthday WHERE ID = :id")
+        .bind("username", username)
+        .bind("birthday", birthday)
+        .bind("id", id)
+        .fetch()
+        .rowsUpdated();
+  }
+
+  // STATUS holds the ordinal, as mapped by JPA for the User entity
+  private static UserSummary toSummary(Row row) {
+    return new UserSummary(row.get("ID", Long.class), row.get("USERNAME", String.class),
+        toInstant(row.get("CREATION_DATE", LocalDateTime.class)), row.get("BIRTHDAY", LocalDate.class),
+        UserStatus.values()[row.get("STATUS", Integer.class)], row.get("VERSION", Long.class));
+  }
+
+  // CREATION_DATE has no time zone, JPA reads and writes it in the JVM's zone as well
+  private static LocalDateTime toTimestamp(Instant instant) {
+    return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+  }
+
+  private static Instant toInstant(LocalDateTime timestamp) {
+    return timestamp.atZone(ZoneId.systemDefault()).toInstant();
+  }
+}
@@ -0,0 +1,18 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+
+import java.util.List;
+
+/**
+ * Bulk writes of the UserRepository that bypass the persistence context,
+ * implemented in UserBulkOperationsImpl.
+ */
+public interface UserBulkOperations {
+
+  /**
+   * Inserts all users in one JDBC batch and sets their ids. Runs in one
+   * transaction, a constraint violation on any row fails the whole call.
+   */
+  void insertAll(List<User> users);
+}
@@ -0,0 +1,65 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.entity.TokenConverter;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * UserBulkOperations with plain JDBC batches. Persisting through the
+ * EntityManager cannot batch users: the VERSION assigned by the database is
+ * read back after every single insert. Ids still come from the id generator
+ * of the User entity, which reserves them in blocks, so a batch of n users
+ * costs n / users.id.increment-size sequence calls.
+ */
+public class UserBulkOperationsImpl implements UserBulkOperations {
+
+  private static final String INSERT = "insert into USER "
+      + "(ID, NAME, USERNAME, PASSWORD, CREATION_DATE, BIRTHDAY, TOKEN, STATUS) values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  @Transactional
+  public void insertAll(List<User> users) {
+    if (users.isEmpty()) {
+      return;
+    }
+    SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+    IdentifierGenerator ids = session.getFactory().getMetamodel().entityPersister(User.class).getIdentifierGenerator();
+    for (User user : users) {
+      user.setId((Long) ids.generate(session, user));
+    }
+    session.doWork(connection -> {
+      try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+        for (User user : users) {
+          insert.setLong(1, user.getId());
+          insert.setString(2, user.getName());
+          insert.setString(3, user.getUsername());
+          insert.setString(4, user.getPassword());
+          insert.setTimestamp(5, Timestamp.from(user.getCreationDate()));
+          if (user.getBirthday() == null) {
+            insert.setNull(6, Types.DATE);
+          }
+          else {
+            insert.setDate(6, Date.valueOf(user.getBirthday()));
+          }
+          insert.setBytes(7, TokenConverter.decode(user.getToken()));
+          insert.setInt(8, user.getStatus().ordinal());
+          insert.addBatch();
+        }
+        insert.executeBatch();
+      }
+    });
+  }
+}
@@ -0,0 +1,34 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+/**
+ * User Credentials
+ * Read-only projection of the columns needed to log a user in. Selecting only
+ * these avoids hydrating a managed User when the login is followed by a
+ * targeted status update anyway.
+ */
+public class UserCredentials {
+
+    private final Long id;
+
+    private final String password;
+
+    private final String token;
+
+    public UserCredentials(Long id, String password, String token) {
+        this.id = id;
+        this.password = password;
+        this.token = token;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getToken() {
+        return token;
+    }
+}
@@ -1,19 +1,103 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository("userRepository")
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserBulkOperations {
+  String SUMMARY = "select new ch.uzh.ifi.hase.soprafs24.repository.UserSummary("
+      + "u.id, u.username, u.creationDate, u.birthday, u.status, u.version) from User u ";
+
   User findByName(String name);
 
   User findByUsername(String username);
 
   User findByToken(String token);
 
+  // which of the given usernames are taken, one query for a whole import batch
+  @Query("select u.username from User u where u.username in :usernames")
+  List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+  @Query("select new ch.uzh.ifi.hase.soprafs24.repository.UserCredentials(u.id, u.password, u.token) "
+      + "from User u where u.name = :name")
+  Optional<UserCredentials> findCredentialsByName(@Param("name") String name);
+
+  // the sessions of users stored as ONLINE, restored into the session index at startup
+  @Query("select new ch.uzh.ifi.hase.soprafs24.repository.UserToken(u.id, u.token) "
+      + "from User u where u.status = :status")
+  List<UserToken> findTokensByStatus(@Param("status") UserStatus status);
+
+  @Query(SUMMARY + "order by u.id")
+  List<UserSummary> findAllSummaries();
+
+  @Query(SUMMARY + "where u.id = :id")
+  Optional<UserSummary> findSummaryById(@Param("id") Long id);
+
+  // callers keep the id list short, see UserService.getUsersByIds
+  @Query(SUMMARY + "where u.id in :ids")
+  List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+  @Query(SUMMARY + "where u.token = :token")
+  Optional<UserSummary> findSummaryByToken(@Param("token") String token);
+
+  // keyset page: the users following the given id, ordered by id
+  @Query(SUMMARY + "where u.id > :id order by u.id")
+  List<UserSummary> findSummariesAfter(@Param("id") Long id, Pageable pageable);
+
+  // the users changed after the given version, in the order of their changes
+  @Query(SUMMARY + "where u.version > :version order by u.version")
+  List<UserSummary> findSummariesChangedSince(@Param("version") Long version);
+
+  // the users created in [from, to), oldest first
+  @Query(SUMMARY + "where u.creationDate >= :from and u.creationDate < :to order by u.creationDate")
+  List<UserSummary> findSummariesCreatedBetween(@Param("from") Instant from, @Param("to") Instant to);
+
+  // birthdays between two days of the year given as month * 100 + day, both included, in calendar order
+  @Query(SUMMARY + "where u.birthdayMonthDay between :from and :to order by u.birthdayMonthDay")
+  List<UserSummary> findSummariesByBirthdayBetween(@Param("from") int from, @Param("to") int to);
+
+  // highest row version, it changes whenever any user is added or changed
+  @Query("select coalesce(max(u.version), 0) from User u")
+  long findTableVersion();
+
+  // the following write in place without loading the entity, they return the number of updated rows
+
+  // joins the caller's transaction, or runs in its own when called outside one (login)
+  @Transactional
+  @Modifying
+  @Query("update User u set u.status = :status where u.id = :id")
+  int updateStatusById(@Param("id") Long id, @Param("status") UserStatus status);
 
+  // used outside request transactions by the status write-behind, hence its own transaction
+  @Transactional
+  @Modifying
+  @Query("update User u set u.status = :status where u.id in :ids")
+  int updateStatusByIdIn(@Param("ids") Collection<Long> ids, @Param("status") UserStatus status);
 
+  @Transactional
+  @Modifying
+  @Query("update User u set u.password = :password where u.id = :id")
+  int updatePasswordById(@Param("id") Long id, @Param("password") String password);
 
+  @Modifying
+  @Query("update User u set u.username = :username where u.id = :id")
+  int updateUsername(@Param("id") Long id, @Param("username") String username);
 
+  @Modifying
+  @Query("update User u set u.username = :username, u.birthday = :birthday where u.id = :id")
+  int updateUsernameAndBirthday(@Param("id") Long id, @Param("username") String username,
+                                @Param("birthday") LocalDate birthday);
 }
@@ -0,0 +1,66 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * User Summary
+ * Read-only projection of the User columns exposed by the API. Queries
+ * returning it select exactly these columns with a constructor expression, so
+ * no managed entity (and neither password nor token) is loaded into the
+ * persistence context. Instances are immutable and safe to share.
+ */
+public class UserSummary {
+
+    private final Long id;
+
+    private final String username;
+
+    private final Instant creationDate;
+
+    private final LocalDate birthday;
+
+    private final UserStatus status;
+
+    private final Long version;
+
+    public UserSummary(Long id, String username, Instant creationDate, LocalDate birthday, UserStatus status,
+                       Long version) {
+        this.id = id;
+        this.username = username;
+        this.creationDate = creationDate;
+        this.birthday = birthday;
+        this.status = status;
+        this.version = version;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Instant getCreationDate() {
+        return creationDate;
+    }
+
+    public LocalDate getBirthday() {
+        return birthday;
+    }
+
+    public UserStatus getStatus() {
+        return status;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public UserSummary withStatus(UserStatus status) {
+        return status == this.status ? this : new UserSummary(id, username, creationDate, birthday, status, version);
+    }
+}
@@ -0,0 +1,27 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+/**
+ * User Token
+ * Read-only projection of a user's id and token, all the session index needs
+ * to restore a session. Unlike UserCredentials it leaves the password hash in
+ * the database.
+ */
+public class UserToken {
+
+    private final Long id;
+
+    private final String token;
+
+    public UserToken(Long id, String token) {
+        this.id = id;
+        this.token = token;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getToken() {
+        return token;
+    }
+}
@@ -0,0 +1,34 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+
+public class PresenceEventDTO {
+
+    private Long id;
+
+    private UserStatus status;
+
+    public PresenceEventDTO() {
+    }
+
+    public PresenceEventDTO(Long id, UserStatus status) {
+        this.id = id;
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public UserStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(UserStatus status) {
+        this.status = status;
+    }
+}
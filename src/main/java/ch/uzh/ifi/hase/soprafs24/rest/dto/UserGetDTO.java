@@ -9,6 +9,7 @@ public class UserGetDTO {
     private String creationDate;
     private UserStatus status;
     private String birthday;
+    private Long version;
 
 
 
@@ -44,4 +45,8 @@ public class UserGetDTO {
 
     public void setCreationDate(String creationDate) { this.creationDate = creationDate; }
 
+    public Long getVersion() { return version; }
+
+    public void setVersion(Long version) { this.version = version; }
+
 }
@@ -0,0 +1,35 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class UserImportErrorDTO {
+
+    // position of the user in the import, counted from 0
+    private int index;
+
+    private String username;
+
+    private String reason;
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
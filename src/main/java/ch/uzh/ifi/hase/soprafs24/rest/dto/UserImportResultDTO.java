@@ -0,0 +1,28 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserImportResultDTO {
+
+    private int created;
+
+    // one entry per user that was not created
+    private List<UserImportErrorDTO> errors = new ArrayList<>();
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public List<UserImportErrorDTO> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<UserImportErrorDTO> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,35 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class UserLookupDTO {
+
+    private Long id;
+
+    // false if there is no user with this id, user is null then
+    private boolean found;
+
+    private UserGetDTO user;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    public UserGetDTO getUser() {
+        return user;
+    }
+
+    public void setUser(UserGetDTO user) {
+        this.user = user;
+    }
+}
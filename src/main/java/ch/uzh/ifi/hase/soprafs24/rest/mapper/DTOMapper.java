@@ -1,12 +1,17 @@
 package ch.uzh.ifi.hase.soprafs24.rest.mapper;
 
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserCredentials;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.LogoutPutDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
 import org.mapstruct.*;
 import org.mapstruct.factory.Mappers;
 
+import java.time.Instant;
+import java.time.LocalDate;
+
 /**
  * DTOMapper
  * This class is responsible for generating classes that will automatically
@@ -33,9 +38,30 @@ public interface DTOMapper {
   @Mapping(source = "birthday", target = "birthday")
   @Mapping(source = "creationDate", target = "creationDate")
   @Mapping(source = "status", target = "status")
+  @Mapping(source = "version", target = "version")
   UserGetDTO convertEntityToUserGetDTO(User user);
 
+  @Mapping(source = "id", target = "id")
+  @Mapping(source = "username", target = "username")
+  @Mapping(source = "birthday", target = "birthday")
+  @Mapping(source = "creationDate", target = "creationDate")
+  @Mapping(source = "status", target = "status")
+  @Mapping(source = "version", target = "version")
+  UserGetDTO convertSummaryToUserGetDTO(UserSummary userSummary);
+
   @Mapping(source = "token", target = "token")
   LogoutPutDTO convertEntityToLogoutPutDTO(User user);
 
+  @Mapping(source = "token", target = "token")
+  LogoutPutDTO convertCredentialsToLogoutPutDTO(UserCredentials userCredentials);
+
+  // used for creationDate and birthday, see DateFormats
+  default String formatCreationDate(Instant creationDate) {
+    return DateFormats.formatCreationDate(creationDate);
+  }
+
+  default String formatBirthday(LocalDate birthday) {
+    return DateFormats.formatBirthday(birthday);
+  }
+
 }
@@ -0,0 +1,49 @@
+package ch.uzh.ifi.hase.soprafs24.rest.mapper;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * DateFormats
+ * Dates are stored typed (TIMESTAMP and DATE) and formatted only for the API,
+ * in the formats clients have always received: the creation date like
+ * java.util.Date#toString in the server's time zone, the birthday as
+ * dd.MM.yyyy. Birthdays are accepted as dd.MM.yyyy or yyyy-MM-dd.
+ */
+public final class DateFormats {
+
+  private static final DateTimeFormatter CREATION_DATE =
+      DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US).withZone(ZoneId.systemDefault());
+
+  private static final DateTimeFormatter BIRTHDAY = DateTimeFormatter.ofPattern("dd.MM.uuuu");
+
+  private DateFormats() {
+  }
+
+  public static String formatCreationDate(Instant creationDate) {
+    return creationDate == null ? null : CREATION_DATE.format(creationDate);
+  }
+
+  public static String formatBirthday(LocalDate birthday) {
+    return birthday == null ? null : BIRTHDAY.format(birthday);
+  }
+
+  public static LocalDate parseBirthday(String birthday) {
+    if (birthday == null) {
+      return null;
+    }
+    try {
+      return birthday.indexOf('-') > 0 ? LocalDate.parse(birthday) : LocalDate.parse(birthday, BIRTHDAY);
+    }
+    catch (DateTimeParseException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Birthday must be given as dd.MM.yyyy or yyyy-MM-dd");
+    }
+  }
+}
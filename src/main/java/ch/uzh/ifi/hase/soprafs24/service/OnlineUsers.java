@@ -0,0 +1,176 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Online Users
+ * All ONLINE users and their number, kept in memory and changed on every
+ * login, logout and expired session, so neither needs a query. Next to
+ * each id the UserSummary of the user is kept, so the online list is
+ * served from memory as well; a login or profile change drops the summary,
+ * it is read again the next time the list is asked for.
+ * Both are lock-free: the users live in a ConcurrentHashMap, whose updates
+ * only contend within a hash bin, and the count in a LongAdder, whose
+ * increments are spread over cells per core. The count is changed inside
+ * the same per-id update as the set, so it always matches the set once
+ * concurrent updates are done. Changes made in a transaction are applied
+ * once it commits. Filled once at startup (load).
+ */
+@Component
+public class OnlineUsers {
+
+    // marks users who went offline before the loader read them, removed by markLoaded
+    private static final Entry WENT_OFFLINE = new Entry(null);
+
+    // a new Entry per change, so a summary read before the change is not stored after it
+    private final ConcurrentMap<Long, Entry> users = new ConcurrentHashMap<>();
+
+    private final LongAdder count = new LongAdder();
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public OnlineUsers(MeterRegistry meterRegistry) {
+        Gauge.builder("users.online", count, LongAdder::sum)
+                .description("Users currently ONLINE")
+                .register(meterRegistry);
+    }
+
+    public void setOnline(long id) {
+        afterCommit(() -> users.compute(id, (ignored, entry) -> {
+            if (entry == null || entry == WENT_OFFLINE) {
+                count.increment();
+            }
+            return new Entry(null);
+        }));
+    }
+
+    public void setOffline(long id) {
+        afterCommit(() -> users.compute(id, (ignored, entry) -> {
+            if (entry != null && entry != WENT_OFFLINE) {
+                count.decrement();
+            }
+            return loaded ? null : WENT_OFFLINE;
+        }));
+    }
+
+    // the user's profile changed, its summary is read again if it is online
+    public void changed(long id) {
+        afterCommit(() -> users.computeIfPresent(id, (ignored, entry) -> entry == WENT_OFFLINE ? entry : new Entry(null)));
+    }
+
+    /**
+     * Adds a user read as ONLINE while loading, unless a login or logout
+     * since then already decided.
+     */
+    public void load(UserSummary user) {
+        if (users.putIfAbsent(user.getId(), new Entry(user.withStatus(UserStatus.ONLINE))) == null) {
+            count.increment();
+        }
+    }
+
+    public void markLoaded() {
+        loaded = true;
+        // only removes entries that are still marked, a login in the meantime replaced them
+        users.values().removeIf(entry -> entry == WENT_OFFLINE);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean isOnline(long id) {
+        Entry entry = users.get(id);
+        return entry != null && entry != WENT_OFFLINE;
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    // the ids of all online users, ascending
+    public List<Long> ids() {
+        List<Long> ids = new ArrayList<>(users.size());
+        users.forEach((id, entry) -> {
+            if (entry != WENT_OFFLINE) {
+                ids.add(id);
+            }
+        });
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns all online users ordered by id. Only the users whose summary
+     * was dropped since the last call are read, through the loader, in one
+     * call; users the loader does not find are left out.
+     */
+    public List<UserSummary> users(Function<Collection<Long>, Map<Long, UserSummary>> loader) {
+        Map<Long, Entry> online = new TreeMap<>();
+        List<Long> missing = new ArrayList<>();
+        users.forEach((id, entry) -> {
+            if (entry != WENT_OFFLINE) {
+                online.put(id, entry);
+                if (entry.summary == null) {
+                    missing.add(id);
+                }
+            }
+        });
+        Map<Long, UserSummary> read = missing.isEmpty() ? Collections.emptyMap() : loader.apply(missing);
+        List<UserSummary> result = new ArrayList<>(online.size());
+        online.forEach((id, entry) -> {
+            UserSummary user = entry.summary;
+            if (user == null && read.containsKey(id)) {
+                user = read.get(id).withStatus(UserStatus.ONLINE);
+                // kept only if the user did not change while it was read
+                users.replace(id, entry, new Entry(user));
+            }
+            if (user != null) {
+                result.add(user);
+            }
+        });
+        return result;
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        }
+        else {
+            change.run();
+        }
+    }
+
+    private static final class Entry {
+
+        // null until read
+        private final UserSummary summary;
+
+        private Entry(UserSummary summary) {
+            this.summary = summary;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Password Hasher
+ * Hashes and verifies passwords with PBKDF2. The algorithm (any PBKDF2 variant
+ * of the JDK) and the iteration count are configurable and stored with every
+ * hash as "algorithm:iterations:salt:hash", so they can be changed without
+ * invalidating existing passwords; needsRehash tells whether a stored hash
+ * was made with other parameters. Hashing runs on a small dedicated pool with
+ * a bounded queue: request threads wait for their result, but no more than
+ * the configured number of hashes are computed at once, and when the queue is
+ * full callers get a 503 instead of piling up.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final int SALT_BYTES = 16;
+
+    private static final int HASH_BITS = 256;
+
+    private final String algorithm;
+
+    private final int iterations;
+
+    private final Duration timeout;
+
+    private final ThreadPoolExecutor executor;
+
+    private final SecureRandom random = new SecureRandom();
+
+    // SecretKeyFactory is not thread-safe, each hashing thread keeps its own
+    private final ThreadLocal<SecretKeyFactory> keyFactories;
+
+    // verified against when a user does not exist, so unknown names take as long as wrong passwords
+    private final String dummyHash;
+
+    @Autowired
+    public PasswordHasher(@Value("${users.password.algorithm:PBKDF2WithHmacSHA256}") String algorithm,
+                          @Value("${users.password.iterations:310000}") int iterations,
+                          @Value("${users.password.threads:2}") int threads,
+                          @Value("${users.password.queue-capacity:64}") int queueCapacity,
+                          @Value("${users.password.timeout:5s}") Duration timeout) {
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.timeout = timeout;
+        this.keyFactories = ThreadLocal.withInitial(() -> {
+            try {
+                return SecretKeyFactory.getInstance(algorithm);
+            }
+            catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Password hash algorithm " + algorithm + " is not available", e);
+            }
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.dummyHash = hash("dummy password");
+    }
+
+    public String hash(String rawPassword) {
+        return run(() -> encode(rawPassword));
+    }
+
+    /**
+     * Hashes the passwords of an import, in order. They are computed on all
+     * threads of the pool, but no more are submitted than there are threads,
+     * so an import never fills the queue that logins wait in.
+     */
+    public List<String> hashAll(List<String> rawPasswords) {
+        List<String> hashes = new ArrayList<>(rawPasswords.size());
+        Deque<Future<String>> inFlight = new ArrayDeque<>();
+        for (String rawPassword : rawPasswords) {
+            if (inFlight.size() == executor.getCorePoolSize()) {
+                hashes.add(await(inFlight.poll()));
+            }
+            inFlight.add(submit(() -> encode(rawPassword)));
+        }
+        while (!inFlight.isEmpty()) {
+            hashes.add(await(inFlight.poll()));
+        }
+        return hashes;
+    }
+
+    /**
+     * Checks the password against the stored hash in constant time. A null
+     * stored hash (unknown user) is checked against a dummy hash and never
+     * matches. Stored values that are no hash are passwords saved in plain
+     * text before hashing was introduced, they are compared directly and
+     * always need a rehash.
+     */
+    public boolean matches(String rawPassword, String storedPassword) {
+        if (rawPassword == null) {
+            return false;
+        }
+        if (storedPassword == null) {
+            matches(rawPassword, dummyHash);
+            return false;
+        }
+        String[] parts = parse(storedPassword);
+        if (parts == null) {
+            return MessageDigest.isEqual(rawPassword.getBytes(StandardCharsets.UTF_8),
+                    storedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] salt = decoder.decode(parts[2]);
+        byte[] expected = decoder.decode(parts[3]);
+        byte[] actual = run(() -> pbkdf2(parts[0], rawPassword, salt, Integer.parseInt(parts[1])));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    public boolean needsRehash(String storedPassword) {
+        String[] parts = parse(storedPassword);
+        return parts == null || !parts[0].equals(algorithm) || Integer.parseInt(parts[1]) != iterations;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    private <T> T run(Callable<T> task) {
+        return await(submit(task));
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        }
+        catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many logins at once, try again later");
+        }
+    }
+
+    private <T> T await(Future<T> result) {
+        try {
+            return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            result.cancel(true);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many logins at once, try again later");
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Password check interrupted");
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    // runs on the pool
+    private String encode(String rawPassword) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(algorithm, rawPassword, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return algorithm + ":" + iterations + ":" + encoder.encodeToString(salt) + ":" + encoder.encodeToString(hash);
+    }
+
+    private byte[] pbkdf2(String hashAlgorithm, String rawPassword, byte[] salt, int hashIterations)
+            throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, hashIterations, HASH_BITS);
+        try {
+            SecretKeyFactory factory = hashAlgorithm.equals(algorithm)
+                    ? keyFactories.get() : SecretKeyFactory.getInstance(hashAlgorithm);
+            return factory.generateSecret(spec).getEncoded();
+        }
+        finally {
+            spec.clearPassword();
+        }
+    }
+
+    // algorithm, iterations, salt and hash of a stored hash, or null if the value is no hash
+    private static String[] parse(String storedPassword) {
+        String[] parts = storedPassword.split(":", -1);
+        if (parts.length != 4 || !parts[0].startsWith("PBKDF2") || parts[1].isEmpty() || parts[1].length() > 9) {
+            return null;
+        }
+        for (int i = 0; i < parts[1].length(); i++) {
+            if (!Character.isDigit(parts[1].charAt(i))) {
+                return null;
+            }
+        }
+        return parts;
+    }
+}
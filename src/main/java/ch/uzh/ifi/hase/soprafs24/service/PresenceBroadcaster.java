@@ -0,0 +1,98 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PresenceEventDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Presence Broadcaster
+ * Fans status changes (user id + new status) out to all subscribers of the
+ * presence stream. Publishing never blocks: every subscriber has its own
+ * bounded buffer, and a subscriber that falls buffer-size events behind is
+ * disconnected instead of slowing down the others or the publisher. A
+ * disconnected client reconnects and reloads the list. Changes made in a
+ * transaction are only published once it commits.
+ */
+@Component
+public class PresenceBroadcaster {
+
+    private final Sinks.Many<PresenceEventDTO> sink = Sinks.many().multicast().directBestEffort();
+
+    private final int bufferSize;
+
+    private final Duration heartbeat;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private final Counter dropped;
+
+    @Autowired
+    public PresenceBroadcaster(@Value("${users.presence.stream.buffer-size:256}") int bufferSize,
+                               @Value("${users.presence.stream.heartbeat:15s}") Duration heartbeat,
+                               MeterRegistry meterRegistry) {
+        this.bufferSize = bufferSize;
+        this.heartbeat = heartbeat;
+        this.dropped = Counter.builder("users.presence.dropped")
+                .description("Presence subscribers disconnected for falling behind")
+                .register(meterRegistry);
+        Gauge.builder("users.presence.subscribers", subscribers, AtomicInteger::get)
+                .description("Open presence streams")
+                .register(meterRegistry);
+    }
+
+    public void publish(Long userId, UserStatus status) {
+        PresenceEventDTO event = new PresenceEventDTO(userId, status);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    emit(event);
+                }
+            });
+        }
+        else {
+            emit(event);
+        }
+    }
+
+    /**
+     * Returns the stream of a new subscriber: presence events from now on,
+     * and a comment every heartbeat so idle connections stay open and closed
+     * ones are noticed.
+     */
+    public Flux<ServerSentEvent<PresenceEventDTO>> subscribe() {
+        Flux<ServerSentEvent<PresenceEventDTO>> events = sink.asFlux()
+                .map(event -> ServerSentEvent.builder(event).event("presence").build());
+        Flux<ServerSentEvent<PresenceEventDTO>> heartbeats = Flux.interval(heartbeat)
+                .map(tick -> ServerSentEvent.<PresenceEventDTO>builder().comment("heartbeat").build());
+        // the per-subscriber buffer, overflowing it ends this subscription with an error
+        return Flux.merge(events, heartbeats)
+                .onBackpressureBuffer(bufferSize, event -> dropped.increment())
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    private void emit(PresenceEventDTO event) {
+        // the sink must not be called concurrently; emitting only fills the subscriber buffers
+        synchronized (sink) {
+            sink.tryEmitNext(event);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.ReactiveUserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserCredentials;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.EditPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LogoutPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DateFormats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Reactive User Service
+ * The operations of UserService for the reactive API, with the same rules and
+ * error responses. Database access goes through the non-blocking
+ * ReactiveUserRepository; reads are served by it directly, without the
+ * UserCache in front of the blocking API. Writes keep the same in-memory
+ * state as UserService up to date (SessionIndex, UserCache, UsernameFilter,
+ * UsernameIndex, OnlineUsers), the SessionSweeper and the servlet-side
+ * readers of these stay live in this profile. Password hashing blocks by nature, it is handed
+ * to the PasswordHasher from a bounded elastic thread so event loop threads
+ * never wait for it.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveUserService {
+
+    private final ReactiveUserRepository userRepository;
+
+    private final SessionIndex sessionIndex;
+
+    private final PasswordHasher passwordHasher;
+
+    private final PresenceBroadcaster presenceBroadcaster;
+
+    private final TokenGenerator tokenGenerator;
+
+    private final OnlineUsers onlineUsers;
+
+    private final UserCache userCache;
+
+    private final UsernameFilter usernameFilter;
+
+    private final UsernameIndex usernameIndex;
+
+    private final Counter authenticationSuccesses;
+
+    private final Counter authenticationFailures;
+
+    @Autowired
+    public ReactiveUserService(ReactiveUserRepository userRepository, SessionIndex sessionIndex,
+                               PasswordHasher passwordHasher, PresenceBroadcaster presenceBroadcaster,
+                               TokenGenerator tokenGenerator, OnlineUsers onlineUsers, UserCache userCache,
+                               UsernameFilter usernameFilter, UsernameIndex usernameIndex, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.sessionIndex = sessionIndex;
+        this.passwordHasher = passwordHasher;
+        this.presenceBroadcaster = presenceBroadcaster;
+        this.tokenGenerator = tokenGenerator;
+        this.onlineUsers = onlineUsers;
+        this.userCache = userCache;
+        this.usernameFilter = usernameFilter;
+        this.usernameIndex = usernameIndex;
+        this.authenticationSuccesses = Counter.builder("users.authentication").tag("result", "success")
+                .register(meterRegistry);
+        this.authenticationFailures = Counter.builder("users.authentication").tag("result", "failure")
+                .register(meterRegistry);
+    }
+
+    public Flux<UserSummary> getUsers() {
+        return userRepository.findAllSummaries();
+    }
+
+    public Flux<UserSummary> getUserPage(Long cursor, int size) {
+        return userRepository.findSummariesAfter(cursor == null ? Long.MIN_VALUE : cursor, size);
+    }
+
+    public Mono<User> createUser(User newUser) {
+        String baseErrorMessage = "The username provided is not unique. Therefore, the user could not be created!";
+        return userRepository.existsByUsername(newUser.getUsername())
+                .flatMap(exists -> exists ? Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, baseErrorMessage))
+                        : offload(() -> passwordHasher.hash(newUser.getPassword())))
+                .flatMap(hash -> {
+                    newUser.setPassword(hash);
+                    newUser.setToken(tokenGenerator.newToken());
+                    newUser.setStatus(UserStatus.OFFLINE);
+                    newUser.setCreationDate(Instant.now());
+                    // the unique constraint rejects a duplicate created between the check and the insert
+                    return userRepository.insert(newUser)
+                            .onErrorResume(DataIntegrityViolationException.class, e -> userRepository.existsByUsername(newUser.getUsername())
+                                    .flatMap(taken -> Mono.<Long>error(taken ? new ResponseStatusException(HttpStatus.CONFLICT, baseErrorMessage) : e)));
+                })
+                .map(id -> {
+                    newUser.setId(id);
+                    usernameFilter.put(newUser.getUsername());
+                    usernameIndex.put(id, newUser.getUsername(), newUser.getStatus());
+                    presenceBroadcaster.publish(id, newUser.getStatus());
+                    return newUser;
+                });
+    }
+
+    public Mono<UserCredentials> logInUser(LoginPostDTO loginPostDTO) {
+        return userRepository.findCredentialsByName(loginPostDTO.getUsername())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(credentials -> offload(() -> passwordHasher.matches(loginPostDTO.getPassword(),
+                        credentials.map(UserCredentials::getPassword).orElse(null)))
+                        .flatMap(matches -> matches ? logIn(credentials.get(), loginPostDTO.getPassword())
+                                : Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid username or password"))));
+    }
+
+    public Mono<Boolean> logOutUser(LogoutPutDTO logoutPutDTO) {
+        String token = logoutPutDTO.getToken();
+        SessionIndex.Session session = sessionIndex.lookup(token);
+        Mono<Long> userId = session != null ? Mono.just(session.getUserId())
+                : userRepository.findSummaryByToken(token).map(UserSummary::getId);
+        return userId
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid token")))
+                .flatMap(id -> userRepository.updateStatusById(id, UserStatus.OFFLINE)
+                        .doOnSuccess(updated -> {
+                            userCache.invalidate(id);
+                            usernameIndex.updateStatus(id, UserStatus.OFFLINE);
+                            sessionIndex.evict(token);
+                            onlineUsers.setOffline(id);
+                            presenceBroadcaster.publish(id, UserStatus.OFFLINE);
+                        }))
+                .thenReturn(true);
+    }
+
+    /**
+     * Checks that the token belongs to a user who is online. Tokens the
+     * SessionIndex does not know are checked with a query but not indexed,
+     * indexing them could race with a logout.
+     */
+    public Mono<Boolean> authenticateUser(String token) {
+        Mono<Boolean> online = sessionIndex.lookup(token) != null ? Mono.just(true)
+                : userRepository.findSummaryByToken(token).map(user -> user.getStatus() == UserStatus.ONLINE);
+        return online.defaultIfEmpty(false)
+                .flatMap(authenticated -> {
+                    if (authenticated) {
+                        authenticationSuccesses.increment();
+                        return Mono.just(true);
+                    }
+                    authenticationFailures.increment();
+                    return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authorization failed"));
+                });
+    }
+
+    public Mono<UserSummary> getUserByToken(String token) {
+        SessionIndex.Session session = sessionIndex.lookup(token);
+        if (session != null) {
+            return getUserById(session.getUserId());
+        }
+        return userRepository.findSummaryByToken(token)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
+    }
+
+    public Mono<UserSummary> getUserById(long id) {
+        return userRepository.findSummaryById(id)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
+    }
+
+    public Mono<Void> update(long id, EditPutDTO editPutDTO) {
+        // deferred so an unreadable birthday is signalled as an error
+        Mono<Integer> updated = Mono.defer(() -> editPutDTO.getBirthday() != null
+                ? userRepository.updateUsernameAndBirthday(id, editPutDTO.getUsername(),
+                        DateFormats.parseBirthday(editPutDTO.getBirthday()))
+                : userRepository.updateUsername(id, editPutDTO.getUsername()));
+        return updated.flatMap(rows -> {
+            if (rows == 0) {
+                return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+            }
+            usernameFilter.put(editPutDTO.getUsername());
+            usernameIndex.rename(id, editPutDTO.getUsername());
+            onlineUsers.changed(id);
+            userCache.invalidate(id);
+            return Mono.empty();
+        });
+    }
+
+    private Mono<UserCredentials> logIn(UserCredentials user, String rawPassword) {
+        Mono<Integer> rehash = passwordHasher.needsRehash(user.getPassword())
+                ? offload(() -> passwordHasher.hash(rawPassword)).flatMap(hash -> userRepository.updatePasswordById(user.getId(), hash))
+                : Mono.just(0);
+        return rehash
+                .then(userRepository.updateStatusById(user.getId(), UserStatus.ONLINE))
+                .doOnSuccess(updated -> {
+                    userCache.invalidate(user.getId());
+                    usernameIndex.updateStatus(user.getId(), UserStatus.ONLINE);
+                    sessionIndex.put(user.getToken(), user.getId());
+                    onlineUsers.setOnline(user.getId());
+                    presenceBroadcaster.publish(user.getId(), UserStatus.ONLINE);
+                })
+                .thenReturn(user);
+    }
+
+    // runs blocking work off the event loop
+    private static <T> Mono<T> offload(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,279 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Session Index
+ * In-memory index from token to the session of a logged in user, so that the
+ * authentication check of a request does not need to load the User from the
+ * database. Entries are added on login and removed on logout; a token that is
+ * not in the index is looked up in the database once and then remembered
+ * until it expires.
+ * A session expires ttl after it was indexed, or idle-timeout after the
+ * token was last seen, whichever comes first. Expired sessions no longer
+ * authenticate but stay in the index until the SessionSweeper has set
+ * their users OFFLINE, so the token cannot be re-indexed from the database
+ * in the meantime. Their deadlines are kept in a TimingWheel, the sweeper
+ * only looks at the sessions that are due.
+ */
+@Component
+public class SessionIndex {
+
+    // last-seen is only written when it moved by at least this much, so busy tokens do not write on every request
+    private static final long TOUCH_GRANULARITY_MILLIS = 1000;
+
+    private static final int WHEEL_SLOTS = 512;
+
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    // incremented on every eviction, a load that raced with one is not indexed
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final long ttlMillis;
+
+    private final long idleTimeoutMillis;
+
+    private final TimingWheel<Map.Entry<String, Session>> deadlines;
+
+    @Autowired
+    public SessionIndex(@Value("${users.session.ttl:24h}") Duration ttl,
+                        @Value("${users.session.idle-timeout:30m}") Duration idleTimeout,
+                        @Value("${users.session.sweep-interval:10s}") Duration sweepInterval,
+                        MeterRegistry meterRegistry) {
+        this.ttlMillis = ttl.toMillis();
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.deadlines = new TimingWheel<>(sweepInterval, WHEEL_SLOTS, System.currentTimeMillis());
+        FunctionCounter.builder("users.session.lookups", hits, LongAdder::sum)
+                .description("Token lookups in the session index")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("users.session.lookups", misses, LongAdder::sum)
+                .description("Token lookups in the session index")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the live session of the token, consulting the loader only if
+     * the index has no entry for it. An expired session is not loaded again,
+     * its user is about to be set OFFLINE.
+     */
+    public Optional<Session> getOrLoad(String token, Function<String, Optional<Session>> loader) {
+        Session session = lookup(token);
+        if (session != null) {
+            return Optional.of(session);
+        }
+        if (sessions.containsKey(token)) {
+            return Optional.empty();
+        }
+        long observed = evictions.get();
+        Optional<Session> loaded = loader.apply(token);
+        loaded.ifPresent(fresh -> {
+            Session indexed = sessions.compute(token, (key, current) -> {
+                if (current != null || evictions.get() != observed) {
+                    return current;
+                }
+                return fresh;
+            });
+            if (indexed == fresh) {
+                deadlines.schedule(Map.entry(token, fresh), fresh.getExpiresAt());
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Returns the live session of the token or null, counting a hit or a miss.
+     * A hit counts as activity of the token and postpones its idle timeout.
+     */
+    public Session lookup(String token) {
+        Session session = sessions.get(token);
+        long now = System.currentTimeMillis();
+        if (session != null && session.isExpired(now)) {
+            session = null;
+        }
+        if (session == null) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+            session.touch(now);
+        }
+        return session;
+    }
+
+    /**
+     * Indexes the session of a user that has just logged in. Must be called
+     * after the status change was written, if the surrounding transaction
+     * rolls back the entry is removed again.
+     */
+    public void put(String token, long userId) {
+        Session session = newSession(userId);
+        sessions.put(token, session);
+        deadlines.schedule(Map.entry(token, session), session.getExpiresAt());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        sessions.remove(token, session);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the session of a user that logs out. When called inside a
+     * transaction it is removed again after completion, so a concurrent
+     * lookup cannot re-index the state from before the commit.
+     */
+    public void evict(String token) {
+        remove(token);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(token);
+                }
+            });
+        }
+    }
+
+    public Session newSession(long userId) {
+        long now = System.currentTimeMillis();
+        return new Session(userId, UserStatus.ONLINE, now + ttlMillis, idleTimeoutMillis, now);
+    }
+
+    /**
+     * Returns the sessions that expired by now and are still indexed. Sessions
+     * that were due but have been used since are scheduled again for their
+     * new deadline. Only called by the SessionSweeper.
+     */
+    public List<Map.Entry<String, Session>> pollExpired(long now) {
+        List<Map.Entry<String, Session>> expired = new ArrayList<>();
+        for (Map.Entry<String, Session> due : deadlines.advance(now)) {
+            Session session = due.getValue();
+            // replaced by a new login, or logged out
+            if (sessions.get(due.getKey()) != session) {
+                continue;
+            }
+            if (session.isExpired(now)) {
+                expired.add(due);
+            }
+            else {
+                deadlines.schedule(due, session.getExpiresAt());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Removes an expired session once its user is OFFLINE. Returns false if
+     * the token was logged in again or out in the meantime.
+     */
+    public boolean removeExpired(String token, Session session) {
+        evictions.incrementAndGet();
+        return sessions.remove(token, session);
+    }
+
+    // expired sessions whose users could not be set OFFLINE, the next sweep tries again
+    public void retryLater(List<Map.Entry<String, Session>> expired) {
+        for (Map.Entry<String, Session> session : expired) {
+            deadlines.schedule(session, 0);
+        }
+    }
+
+    // whether the token has a live session, without counting a lookup
+    public boolean isActive(String token) {
+        Session session = sessions.get(token);
+        return session != null && !session.isExpired(System.currentTimeMillis());
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private void remove(String token) {
+        evictions.incrementAndGet();
+        sessions.remove(token);
+    }
+
+    public static final class Session {
+
+        private final long userId;
+
+        private final UserStatus status;
+
+        private final long expiresAt;
+
+        private final long idleTimeoutMillis;
+
+        private volatile long lastSeenAt;
+
+        Session(long userId, UserStatus status, long expiresAt, long idleTimeoutMillis, long lastSeenAt) {
+            this.userId = userId;
+            this.status = status;
+            this.expiresAt = expiresAt;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.lastSeenAt = lastSeenAt;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public UserStatus getStatus() {
+            return status;
+        }
+
+        public long getLastSeenAt() {
+            return lastSeenAt;
+        }
+
+        // the earlier of the ttl and the idle timeout
+        public long getExpiresAt() {
+            return Math.min(expiresAt, lastSeenAt + idleTimeoutMillis);
+        }
+
+        boolean isExpired(long now) {
+            return now >= getExpiresAt();
+        }
+
+        void touch(long now) {
+            if (now - lastSeenAt >= TOUCH_GRANULARITY_MILLIS) {
+                lastSeenAt = now;
+            }
+        }
+    }
+}
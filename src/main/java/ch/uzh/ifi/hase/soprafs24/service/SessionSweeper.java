@@ -0,0 +1,123 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session Sweeper
+ * Sets users OFFLINE whose session expired (ttl or idle timeout, see
+ * SessionIndex), so clients that crashed or never logged out do not stay
+ * ONLINE forever. Every sweep-interval it takes the sessions that fell due
+ * from the SessionIndex and writes them with one update per batch-size
+ * users. On startup the sessions of users stored as ONLINE are indexed
+ * first, so they expire as well if their clients do not come back.
+ */
+@Component
+public class SessionSweeper {
+
+    private final Logger log = LoggerFactory.getLogger(SessionSweeper.class);
+
+    private final SessionIndex sessionIndex;
+
+    private final UserService userService;
+
+    private final Duration interval;
+
+    private final int batchSize;
+
+    private final Counter swept;
+
+    private final Timer sweeps;
+
+    private ScheduledExecutorService sweeper;
+
+    @Autowired
+    public SessionSweeper(SessionIndex sessionIndex, UserService userService,
+                          @Value("${users.session.sweep-interval:10s}") Duration interval,
+                          @Value("${users.session.sweep-batch-size:500}") int batchSize,
+                          MeterRegistry meterRegistry) {
+        this.sessionIndex = sessionIndex;
+        this.userService = userService;
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.swept = Counter.builder("users.session.swept")
+                .description("Expired sessions whose users were set OFFLINE")
+                .register(meterRegistry);
+        this.sweeps = Timer.builder("users.session.sweeps")
+                .description("Sweeps of expired sessions")
+                .register(meterRegistry);
+        Gauge.builder("users.session.indexed", sessionIndex, SessionIndex::size)
+                .description("Sessions in the session index, including expired ones not yet swept")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        int restored = userService.restoreSessions();
+        log.info("Restored {} sessions of users stored as ONLINE", restored);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, interval.toMillis());
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the users of all sessions that expired by now OFFLINE and returns
+     * their number. If writing fails the sessions are swept again next time.
+     */
+    public int sweep() {
+        List<Map.Entry<String, SessionIndex.Session>> expired = sessionIndex.pollExpired(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            int count = userService.expireSessions(expired, batchSize);
+            swept.increment(count);
+            return count;
+        }
+        catch (RuntimeException e) {
+            sessionIndex.retryLater(expired);
+            throw e;
+        }
+        finally {
+            sweeps.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        }
+        catch (RuntimeException e) {
+            // keep the schedule, the sessions are retried on the next run
+            log.error("Sweeping expired sessions failed", e);
+        }
+    }
+}
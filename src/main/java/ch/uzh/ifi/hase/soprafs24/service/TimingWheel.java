@@ -0,0 +1,85 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Timing Wheel
+ * Hashed timing wheel: deadlines are put into one of a fixed number of slots
+ * by the tick they fall due in, so scheduling costs one lock-free queue
+ * append and advancing only looks at the slots of the ticks that passed.
+ * Deadlines more than one rotation ahead share a slot with earlier ones and
+ * are kept there until their own rotation. Items can be scheduled from any
+ * thread, advance must only be called from one.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+
+    private final List<Queue<Timeout<T>>> slots;
+
+    // the last tick advance has processed
+    private volatile long currentTick;
+
+    public TimingWheel(Duration tick, int slotCount, long nowMillis) {
+        this.tickMillis = Math.max(1, tick.toMillis());
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ConcurrentLinkedQueue<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedules the item for the first tick at or after its deadline; a
+     * deadline in the past falls due on the next tick. An item added to a
+     * slot while advance drains it is only seen one rotation later.
+     */
+    public void schedule(T item, long deadlineMillis) {
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        slots.get((int) (tick % slots.size())).add(new Timeout<>(item, deadlineMillis));
+    }
+
+    /**
+     * Processes all ticks up to now and returns the items whose deadline has
+     * passed, each item once.
+     */
+    public List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        // after a long pause every slot is visited once, not once per missed tick
+        long firstTick = Math.max(currentTick + 1, targetTick - slots.size() + 1);
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            currentTick = tick;
+            Queue<Timeout<T>> slot = slots.get((int) (tick % slots.size()));
+            List<Timeout<T>> later = new ArrayList<>();
+            Timeout<T> timeout;
+            while ((timeout = slot.poll()) != null) {
+                if (timeout.deadlineMillis <= nowMillis) {
+                    due.add(timeout.item);
+                }
+                else {
+                    later.add(timeout);
+                }
+            }
+            slot.addAll(later);
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return due;
+    }
+
+    private static final class Timeout<T> {
+
+        private final T item;
+
+        private final long deadlineMillis;
+
+        private Timeout(T item, long deadlineMillis) {
+            this.item = item;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+}
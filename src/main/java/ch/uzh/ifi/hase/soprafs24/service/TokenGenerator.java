@@ -0,0 +1,45 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.TokenConverter;
+import org.springframework.stereotype.Component;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Token Generator
+ * Creates session tokens of 16 random bytes. UUID.randomUUID shares one
+ * SecureRandom across all threads; here a fixed number of DRBG instances,
+ * each seeded once from the system source, are picked by thread id, so
+ * concurrent requests rarely wait for each other and never for entropy.
+ * Striping instead of one instance per thread keeps the count bounded
+ * when requests run on virtual threads.
+ */
+@Component
+public class TokenGenerator {
+
+    private final SecureRandom[] randoms;
+
+    public TokenGenerator() {
+        this.randoms = new SecureRandom[Math.max(2, Runtime.getRuntime().availableProcessors() * 2)];
+        for (int i = 0; i < randoms.length; i++) {
+            randoms[i] = newRandom();
+        }
+    }
+
+    // a token in the string form clients see, see TokenConverter
+    public String newToken() {
+        byte[] token = new byte[TokenConverter.TOKEN_BYTES];
+        randoms[(int) (Thread.currentThread().getId() % randoms.length)].nextBytes(token);
+        return TokenConverter.encode(token);
+    }
+
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        }
+        catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * User Cache
+ * Bounded read-through cache of user snapshots keyed by id. Snapshots are
+ * immutable UserSummary projections, so they can be handed out as they are.
+ * Once the configured size is reached the least recently used entry is
+ * evicted.
+ */
+@Component
+public class UserCache {
+
+    private final Map<Long, UserSummary> snapshots;
+
+    // incremented on every invalidation, a load that raced with one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public UserCache(@Value("${users.cache.max-size:10000}") int maxSize) {
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserSummary> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Optional<UserSummary> getOrLoad(long id, LongFunction<Optional<UserSummary>> loader) {
+        synchronized (snapshots) {
+            UserSummary cached = snapshots.get(id);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        long observed = invalidations.get();
+        Optional<UserSummary> loaded = loader.apply(id);
+        loaded.ifPresent(summary -> {
+            synchronized (snapshots) {
+                if (invalidations.get() == observed) {
+                    snapshots.put(id, summary);
+                }
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Bulk variant of getOrLoad: snapshots in the cache are served from it,
+     * all missing ids are handed to the loader in one call. Returns the users
+     * found by id, ids without a user are left out.
+     */
+    public Map<Long, UserSummary> getAllOrLoad(Collection<Long> ids,
+                                               Function<Collection<Long>, List<UserSummary>> loader) {
+        Map<Long, UserSummary> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (snapshots) {
+            for (Long id : ids) {
+                UserSummary cached = snapshots.get(id);
+                if (cached != null) {
+                    found.put(id, cached);
+                }
+                else {
+                    missing.add(id);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+        long observed = invalidations.get();
+        List<UserSummary> loaded = loader.apply(missing);
+        synchronized (snapshots) {
+            for (UserSummary summary : loaded) {
+                found.put(summary.getId(), summary);
+                if (invalidations.get() == observed) {
+                    snapshots.put(summary.getId(), summary);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Drops the snapshot of the given user. When called inside a transaction
+     * the entry is dropped again after completion, so a concurrent reader
+     * cannot re-populate it with the state from before the commit.
+     */
+    public void invalidate(long id) {
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    private void evict(long id) {
+        synchronized (snapshots) {
+            invalidations.incrementAndGet();
+            snapshots.remove(id);
+        }
+    }
+}
@@ -2,22 +2,43 @@ package ch.uzh.ifi.hase.soprafs24.service;
 
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserCredentials;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.repository.UserToken;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.EditPutDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.LogoutPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DateFormats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.Date;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * User Service
@@ -25,101 +46,558 @@ import java.util.UUID;
  * the user
  * (e.g., it creates, modifies, deletes, finds). The result will be passed back
  * to the caller.
+ * Reads run in read-only transactions (no flush, no dirty-checking snapshots,
+ * read-only JDBC connection), only state changes open read-write ones.
  */
 @Service
-@Transactional
 public class UserService {
 
+    // ids per IN query of getUsersByIds, a power of two so padded IN lists need no extra parameters
+    private static final int LOOKUP_CHUNK_SIZE = 128;
+
+    // users per query while the in-memory indexes are loaded
+    private static final int INDEX_LOAD_PAGE_SIZE = 1000;
+
+    private static final String USERNAME_NOT_UNIQUE =
+            "The username provided is not unique. Therefore, the user could not be created!";
+
     private final Logger log = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
 
+    private final UserCache userCache;
+
+    private final SessionIndex sessionIndex;
+
+    private final UserStatusWriter userStatusWriter;
+
+    private final PasswordHasher passwordHasher;
+
+    private final PresenceBroadcaster presenceBroadcaster;
+
+    private final TokenGenerator tokenGenerator;
+
+    private final UsernameFilter usernameFilter;
+
+    private final UsernameIndex usernameIndex;
+
+    private final OnlineUsers onlineUsers;
+
+    private final Counter authenticationSuccesses;
+
+    private final Counter authenticationFailures;
+
     @Autowired
-    public UserService(@Qualifier("userRepository") UserRepository userRepository) {
+    public UserService(@Qualifier("userRepository") UserRepository userRepository, UserCache userCache,
+                       SessionIndex sessionIndex, UserStatusWriter userStatusWriter, PasswordHasher passwordHasher,
+                       PresenceBroadcaster presenceBroadcaster, TokenGenerator tokenGenerator,
+                       UsernameFilter usernameFilter, UsernameIndex usernameIndex, OnlineUsers onlineUsers,
+                       MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.sessionIndex = sessionIndex;
+        this.userStatusWriter = userStatusWriter;
+        this.passwordHasher = passwordHasher;
+        this.presenceBroadcaster = presenceBroadcaster;
+        this.tokenGenerator = tokenGenerator;
+        this.usernameFilter = usernameFilter;
+        this.usernameIndex = usernameIndex;
+        this.onlineUsers = onlineUsers;
+        this.authenticationSuccesses = authenticationCounter(meterRegistry, "success");
+        this.authenticationFailures = authenticationCounter(meterRegistry, "failure");
+    }
+
+    /**
+     * Fills the UsernameFilter, the UsernameIndex and OnlineUsers once the
+     * application is up, reading the users page by page in id order. Users
+     * created, renamed, logged in or out meanwhile are applied by the
+     * methods below; until the last page is read the filter sends every
+     * check to the database and searches are refused.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndexes() {
+        long start = System.nanoTime();
+        long afterId = Long.MIN_VALUE;
+        List<UserSummary> page;
+        do {
+            page = userRepository.findSummariesAfter(afterId, PageRequest.of(0, INDEX_LOAD_PAGE_SIZE));
+            for (UserSummary user : page) {
+                UserStatus status = withPendingStatus(user).getStatus();
+                usernameFilter.put(user.getUsername());
+                usernameIndex.load(user.getId(), user.getUsername(), status);
+                if (status == UserStatus.ONLINE) {
+                    onlineUsers.load(user);
+                }
+                afterId = user.getId();
+            }
+        } while (page.size() == INDEX_LOAD_PAGE_SIZE);
+        usernameFilter.markLoaded();
+        usernameIndex.markLoaded();
+        onlineUsers.markLoaded();
+        log.info("Loaded {} usernames ({} online) in {} ms, estimated false positive rate of the filter {}",
+                usernameIndex.size(), onlineUsers.count(), (System.nanoTime() - start) / 1_000_000,
+                usernameFilter.estimatedFalsePositiveRate());
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUsers() {
+        return withPendingStatus(this.userRepository.findAllSummaries());
+    }
+
+    /**
+     * Returns up to size users with an id greater than the cursor, ordered by
+     * id. A null cursor starts at the first user.
+     */
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUserPage(Long cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : cursor;
+        return withPendingStatus(this.userRepository.findSummariesAfter(afterId, PageRequest.of(0, size)));
+    }
+
+    /**
+     * Returns the users added or changed after the given version, ordered by
+     * version. The highest version in the result is the one to pass next,
+     * lowered by the overlap described at UserController#getUsersChangedSince.
+     */
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUsersChangedSince(long version) {
+        return withPendingStatus(this.userRepository.findSummariesChangedSince(version));
     }
 
-    public List<User> getUsers() {
-        return this.userRepository.findAll();
+    /**
+     * Returns a tag that changes whenever the user list changes: the highest
+     * row version, and the number of status changes the UserStatusWriter has
+     * buffered so far, as those only reach the row versions once written.
+     */
+    @Transactional(readOnly = true)
+    public String getUsersVersion() {
+        return userRepository.findTableVersion() + "." + userStatusWriter.getBufferedChanges();
+    }
+
+    /**
+     * Returns the users who are ONLINE, ordered by id, from OnlineUsers. Only
+     * users who logged in or changed since the last call are read, from the
+     * database rather than the UserCache, which is invalidated only after
+     * OnlineUsers learns of a change; not transactional, like searchUsers.
+     */
+    public List<UserSummary> getOnlineUsers() {
+        checkLoaded(onlineUsers.isLoaded());
+        return onlineUsers.users(ids -> {
+            Map<Long, UserSummary> users = new HashMap<>();
+            for (UserSummary user : loadSummaries(ids)) {
+                users.put(user.getId(), user);
+            }
+            return users;
+        });
     }
 
+    public long countOnlineUsers() {
+        checkLoaded(onlineUsers.isLoaded());
+        return onlineUsers.count();
+    }
+
+    /**
+     * Returns up to limit users whose username starts with the prefix,
+     * ignoring case, in alphabetical order, optionally only those with the
+     * given status. The UsernameIndex finds the ids, the users come from
+     * the UserCache. Not transactional, so a search whose users are all
+     * cached does not touch the database.
+     */
+    public List<UserSummary> searchUsers(String prefix, UserStatus status, int limit) {
+        checkLoaded(usernameIndex.isLoaded());
+        List<Long> ids = usernameIndex.search(prefix, status, limit);
+        Map<Long, UserSummary> users = getUsersByIds(ids);
+        List<UserSummary> matches = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserSummary user = users.get(id);
+            if (user != null) {
+                matches.add(user);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the users created from (inclusive) to (exclusive), oldest
+     * first, found through the index on the creation date.
+     */
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUsersCreatedBetween(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "createdFrom must be before createdTo");
+        }
+        return withPendingStatus(this.userRepository.findSummariesCreatedBetween(from, to));
+    }
+
+    /**
+     * Returns the users whose birthday falls in the week (Monday to Sunday)
+     * of the given day, in the order of the days. The days are compared by
+     * month and day through an index; a week across New Year is read as two
+     * ranges.
+     */
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUsersWithBirthdayInWeekOf(LocalDate day) {
+        LocalDate monday = day.with(DayOfWeek.MONDAY);
+        int from = monthDay(monday);
+        int to = monthDay(monday.plusDays(6));
+        List<UserSummary> users = new ArrayList<>();
+        if (from <= to) {
+            users.addAll(userRepository.findSummariesByBirthdayBetween(from, to));
+        }
+        else {
+            users.addAll(userRepository.findSummariesByBirthdayBetween(from, 1231));
+            users.addAll(userRepository.findSummariesByBirthdayBetween(101, to));
+        }
+        return withPendingStatus(users);
+    }
+
+    /**
+     * Not transactional so no database connection is held while the password
+     * is hashed. The uniqueness check and the insert run in their own
+     * transactions, the unique constraint on username still rejects a
+     * duplicate that slips in between. Usernames the UsernameFilter has
+     * never seen skip the uniqueness query.
+     */
     public User createUser(User newUser) {
-        newUser.setToken(UUID.randomUUID().toString());
+        newUser.setToken(tokenGenerator.newToken());
         newUser.setStatus(UserStatus.OFFLINE);
-        newUser.setCreationDate(new Date().toString());
+        newUser.setCreationDate(Instant.now());
         checkIfUserExists(newUser);
-        // saves the given entity but data is only persisted in the database once
-        // flush() is called
-        newUser = userRepository.save(newUser);
-        userRepository.flush();
+        newUser.setPassword(passwordHasher.hash(newUser.getPassword()));
+        // the insert is written when the transaction commits, no separate flush needed
+        try {
+            newUser = userRepository.save(newUser);
+        }
+        catch (DataIntegrityViolationException e) {
+            // taken in the meantime, or by a row the filter has not seen (written by another instance)
+            if (userRepository.findByUsername(newUser.getUsername()) != null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, USERNAME_NOT_UNIQUE);
+            }
+            throw e;
+        }
+        usernameFilter.put(newUser.getUsername());
+        usernameIndex.put(newUser.getId(), newUser.getUsername(), newUser.getStatus());
+        // nothing to invalidate here, the UserCache never stores misses so a
+        // freshly assigned id cannot have a stale entry
+        presenceBroadcaster.publish(newUser.getId(), newUser.getStatus());
 
         log.debug("Created Information for User: {}", newUser);
 
         return newUser;
     }
 
-    @Transactional
-    public User logInUser(LoginPostDTO loginPostDTO) {
-        User user = userRepository.findByName(loginPostDTO.getUsername());
-        if (user == null) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid username or password");
+    /**
+     * Creates many users at once, for imports. Usernames are checked against
+     * each other and, those the UsernameFilter cannot rule out, with one
+     * query against the database, then all remaining
+     * users are inserted in a single JDBC batch. Returns why each rejected
+     * user was not created, by its index in newUsers. If another request
+     * takes one of the usernames between the check and the insert, the batch
+     * is retried user by user so only that user fails. Like createUser this
+     * is not transactional, no connection is held while hashing. No presence
+     * events are published, clients pick imported users up through
+     * GET /users?since.
+     */
+    public Map<Integer, String> createUsers(List<User> newUsers) {
+        Map<Integer, String> failures = new TreeMap<>();
+        Set<String> usernames = new HashSet<>();
+        for (int i = 0; i < newUsers.size(); i++) {
+            User user = newUsers.get(i);
+            if (isMissing(user.getName()) || isMissing(user.getUsername()) || isMissing(user.getPassword())) {
+                failures.put(i, "Name, username and password are required");
+            }
+            else if (!usernames.add(user.getUsername())) {
+                failures.put(i, "The username appears more than once in the import");
+            }
         }
-        if (user.getPassword().equals(loginPostDTO.getPassword())) {
-            user.setStatus(UserStatus.ONLINE);
-            userRepository.save(user);
-            userRepository.flush();
-            return user;
-        } else {
+        List<String> probablyTaken = new ArrayList<>();
+        for (String username : usernames) {
+            if (usernameFilter.mightContain(username)) {
+                probablyTaken.add(username);
+            }
+        }
+        Set<String> taken = probablyTaken.isEmpty() ? Collections.emptySet()
+                : new HashSet<>(userRepository.findExistingUsernames(probablyTaken));
+        for (int i = taken.size(); i < probablyTaken.size(); i++) {
+            usernameFilter.recordFalsePositive();
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        List<String> passwords = new ArrayList<>();
+        for (int i = 0; i < newUsers.size(); i++) {
+            User user = newUsers.get(i);
+            if (failures.containsKey(i)) {
+                continue;
+            }
+            if (taken.contains(user.getUsername())) {
+                failures.put(i, USERNAME_NOT_UNIQUE);
+                continue;
+            }
+            indexes.add(i);
+            users.add(user);
+            passwords.add(user.getPassword());
+        }
+
+        List<String> hashes = passwordHasher.hashAll(passwords);
+        Instant creationDate = Instant.now();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            user.setToken(tokenGenerator.newToken());
+            user.setStatus(UserStatus.OFFLINE);
+            user.setCreationDate(creationDate);
+            user.setPassword(hashes.get(i));
+        }
+        try {
+            userRepository.insertAll(users);
+            for (User user : users) {
+                usernameFilter.put(user.getUsername());
+                usernameIndex.put(user.getId(), user.getUsername(), user.getStatus());
+            }
+        }
+        catch (DataIntegrityViolationException e) {
+            log.debug("Import batch hit a username taken in the meantime, retrying user by user");
+            for (int i = 0; i < users.size(); i++) {
+                try {
+                    userRepository.insertAll(Collections.singletonList(users.get(i)));
+                    usernameFilter.put(users.get(i).getUsername());
+                    usernameIndex.put(users.get(i).getId(), users.get(i).getUsername(), users.get(i).getStatus());
+                }
+                catch (DataIntegrityViolationException rowFailure) {
+                    failures.put(indexes.get(i), USERNAME_NOT_UNIQUE);
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Logs the user in with a narrow credentials select followed by a single
+     * status update (or a buffered one, see UserStatusWriter), no managed
+     * entity is loaded or merged. Not transactional: the password check is
+     * slow on purpose and must not hold a database connection, so the select
+     * and the updates each run in their own short transaction. A hash made
+     * with outdated parameters is replaced while the plain password is at
+     * hand.
+     */
+    public UserCredentials logInUser(LoginPostDTO loginPostDTO) {
+        Optional<UserCredentials> credentials = userRepository.findCredentialsByName(loginPostDTO.getUsername());
+        String storedPassword = credentials.map(UserCredentials::getPassword).orElse(null);
+        // unknown names are checked against a dummy hash, so they take as long as wrong passwords
+        if (!passwordHasher.matches(loginPostDTO.getPassword(), storedPassword)) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid username or password");
         }
+        UserCredentials user = credentials.get();
+        if (passwordHasher.needsRehash(storedPassword)) {
+            userRepository.updatePasswordById(user.getId(), passwordHasher.hash(loginPostDTO.getPassword()));
+        }
+        userStatusWriter.write(user.getId(), UserStatus.ONLINE);
+        userCache.invalidate(user.getId());
+        usernameIndex.updateStatus(user.getId(), UserStatus.ONLINE);
+        onlineUsers.setOnline(user.getId());
+        sessionIndex.put(user.getToken(), user.getId());
+        presenceBroadcaster.publish(user.getId(), UserStatus.ONLINE);
+        return user;
     }
 
+    /**
+     * Logs the user out. The token is first resolved to the user id, from the
+     * SessionIndex or, for tokens the index does not know, with a select by
+     * token. The status is then written by id through the UserStatusWriter,
+     * one UPDATE ... WHERE id (or a buffered change with write-behind); there
+     * is no UPDATE ... WHERE token, the id is needed anyway for the cache,
+     * the indexes and the presence event.
+     */
+    @Transactional
     public boolean logOutUser(LogoutPutDTO logoutPutDTO) {
-        User user = userRepository.findByToken(logoutPutDTO.getToken());
-        if (user == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid token");
-        }
-        if (user.getToken().equals(logoutPutDTO.getToken())) {
-            user.setStatus(UserStatus.OFFLINE);
-            userRepository.save(user);
-            userRepository.flush();
-            return true;
-        } else {
+        String token = logoutPutDTO.getToken();
+        SessionIndex.Session session = sessionIndex.lookup(token);
+        Long userId = session != null ? Long.valueOf(session.getUserId())
+                : userRepository.findSummaryByToken(token).map(UserSummary::getId).orElse(null);
+        if (userId == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid token");
         }
+        userStatusWriter.write(userId, UserStatus.OFFLINE);
+        userCache.invalidate(userId);
+        usernameIndex.updateStatus(userId, UserStatus.OFFLINE);
+        onlineUsers.setOffline(userId);
+        sessionIndex.evict(token);
+        presenceBroadcaster.publish(userId, UserStatus.OFFLINE);
+        return true;
     }
 
+    /**
+     * Checks that the token belongs to a user who is online. The common case
+     * is answered by the SessionIndex, only unknown tokens hit the database.
+     */
+    @Transactional(readOnly = true)
     public boolean authenticateUser(String token) {
-        User user = userRepository.findByToken(token);
-        if (user != null && user.getStatus() == UserStatus.ONLINE) {
+        Optional<SessionIndex.Session> session = sessionIndex.getOrLoad(token, this::loadSession);
+        if (session.isPresent() && session.get().getStatus() == UserStatus.ONLINE) {
+            authenticationSuccesses.increment();
             return true;
         } else {
+            authenticationFailures.increment();
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authorization failed");
         }
     }
 
-    public User getUserById(long id) {
-        List<User> users = getUsers();
-        for (User user : users) {
-            if (user.getId() == id) {
-                return (user);
+    /**
+     * Indexes the sessions of the users stored as ONLINE, so they expire like
+     * any other session if their clients do not come back after a restart.
+     * Called by the SessionSweeper before requests are accepted.
+     */
+    public int restoreSessions() {
+        List<UserToken> online = userRepository.findTokensByStatus(UserStatus.ONLINE);
+        for (UserToken user : online) {
+            sessionIndex.put(user.getToken(), user.getId());
+        }
+        return online.size();
+    }
+
+    /**
+     * Sets the users of expired sessions OFFLINE with one update per batch,
+     * then removes the sessions from the SessionIndex. A user who logged in
+     * again while the update ran is set ONLINE again. Returns the number of
+     * users set OFFLINE. Called by the SessionSweeper.
+     */
+    public int expireSessions(List<Map.Entry<String, SessionIndex.Session>> expired, int batchSize) {
+        List<Long> userIds = new ArrayList<>(expired.size());
+        for (Map.Entry<String, SessionIndex.Session> session : expired) {
+            userIds.add(session.getValue().getUserId());
+        }
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            userRepository.updateStatusByIdIn(userIds.subList(from, Math.min(from + batchSize, userIds.size())),
+                    UserStatus.OFFLINE);
+        }
+        int swept = 0;
+        for (Map.Entry<String, SessionIndex.Session> session : expired) {
+            String token = session.getKey();
+            long userId = session.getValue().getUserId();
+            userCache.invalidate(userId);
+            if (sessionIndex.removeExpired(token, session.getValue())) {
+                usernameIndex.updateStatus(userId, UserStatus.OFFLINE);
+                onlineUsers.setOffline(userId);
+                presenceBroadcaster.publish(userId, UserStatus.OFFLINE);
+                swept++;
             }
-        }  throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+            else if (sessionIndex.isActive(token)) {
+                // the login's ONLINE may have been written before the update
+                userStatusWriter.write(userId, UserStatus.ONLINE);
+            }
+        }
+        return swept;
     }
 
+    @Transactional(readOnly = true)
+    public UserSummary getUserByToken(String token) {
+        SessionIndex.Session session = sessionIndex.lookup(token);
+        if (session != null) {
+            return getUserById(session.getUserId());
+        }
+        return userRepository.findSummaryByToken(token)
+                .map(this::withPendingStatus)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+    }
+
+    /**
+     * Looks the user up by primary key. Snapshots are served from the
+     * UserCache, only a miss goes to the database.
+     */
+    @Transactional(readOnly = true)
+    public UserSummary getUserById(long id) {
+        return userCache.getOrLoad(id, userRepository::findSummaryById)
+                .map(this::withPendingStatus)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+    }
+
+    /**
+     * Looks many users up at once. Snapshots are served from the UserCache,
+     * the missing ones are loaded with IN queries of up to LOOKUP_CHUNK_SIZE
+     * ids each. Returns the users found by id, ids without a user are left
+     * out.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, UserSummary> getUsersByIds(Collection<Long> ids) {
+        Map<Long, UserSummary> users = userCache.getAllOrLoad(new LinkedHashSet<>(ids), this::loadSummaries);
+        users.replaceAll((id, user) -> withPendingStatus(user));
+        return users;
+    }
+
+    @Transactional
     public void update(long id, EditPutDTO editPutDTO) {
-        User user = getUserById(id);
-        if (user == null) {
+        // a single update by id, no row means no such user
+        int updated;
+        if (editPutDTO.getBirthday() != null) {
+            updated = userRepository.updateUsernameAndBirthday(id, editPutDTO.getUsername(),
+                    DateFormats.parseBirthday(editPutDTO.getBirthday()));
+        }
+        else {
+            updated = userRepository.updateUsername(id, editPutDTO.getUsername());
+        }
+        if (updated == 0) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
         }
-        user.setUsername(editPutDTO.getUsername());
-        if (editPutDTO.getBirthday() != null) {
-            user.setBirthday(editPutDTO.getBirthday());
+        usernameFilter.put(editPutDTO.getUsername());
+        usernameIndex.rename(id, editPutDTO.getUsername());
+        onlineUsers.changed(id);
+        userCache.invalidate(id);
+    }
+
+    // the key of the birthday index, see V6__store_dates_typed.sql
+    private static int monthDay(LocalDate day) {
+        return day.getMonthValue() * 100 + day.getDayOfMonth();
+    }
+
+    // the in-memory indexes are filled after startup, see loadIndexes
+    private static void checkLoaded(boolean loaded) {
+        if (!loaded) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The server is starting up, try again later");
         }
-        userRepository.save(user);
-        userRepository.flush();
+    }
+
+    private static boolean isMissing(String value) {
+        return value == null || value.isBlank();
+    }
 
+    private static Counter authenticationCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("users.authentication")
+                .description("Token checks of authenticateUser")
+                .tag("result", result)
+                .register(meterRegistry);
     }
+
+    private List<UserSummary> loadSummaries(Collection<Long> ids) {
+        List<Long> idList = new ArrayList<>(ids);
+        List<UserSummary> users = new ArrayList<>(idList.size());
+        for (int from = 0; from < idList.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = idList.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, idList.size()));
+            users.addAll(userRepository.findSummariesByIdIn(chunk));
+        }
+        return users;
+    }
+
+    private Optional<SessionIndex.Session> loadSession(String token) {
+        return userRepository.findSummaryByToken(token)
+                .map(this::withPendingStatus)
+                .filter(user -> user.getStatus() == UserStatus.ONLINE)
+                .map(user -> sessionIndex.newSession(user.getId()));
+    }
+
+    // status changes still buffered by the UserStatusWriter win over what was read
+    private UserSummary withPendingStatus(UserSummary user) {
+        UserStatus pending = userStatusWriter.pendingStatus(user.getId());
+        return pending == null ? user : user.withStatus(pending);
+    }
+
+    private List<UserSummary> withPendingStatus(List<UserSummary> users) {
+        List<UserSummary> result = new ArrayList<>(users.size());
+        for (UserSummary user : users) {
+            result.add(withPendingStatus(user));
+        }
+        return result;
+    }
+
     /**
      * This is a helper method that will check the uniqueness criteria of the
      * username and the name
@@ -131,13 +609,17 @@ public class UserService {
      * @see User
      */
     private void checkIfUserExists(User userToBeCreated) {
-        User userByUsername = userRepository.findByUsername(userToBeCreated.getUsername());
+        String username = userToBeCreated.getUsername();
+        if (username != null && !usernameFilter.mightContain(username)) {
+            return;
+        }
+        User userByUsername = userRepository.findByUsername(username);
 
-        String baseErrorMessage = "The username provided is not unique. Therefore, the user could not be created!";
         if (userByUsername != null) {
-            throw new ResponseStatusException(HttpStatus.CONFLICT, baseErrorMessage);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, USERNAME_NOT_UNIQUE);
 
         }
+        usernameFilter.recordFalsePositive();
 
     }
 }
@@ -0,0 +1,183 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * User Status Writer
+ * Writes ONLINE/OFFLINE changes of users. By default every change is a single
+ * update in the caller's transaction. With write-behind enabled, changes are
+ * collected in memory instead: repeated flips of one user coalesce into the
+ * latest status, and the buffer is written with one update per status and
+ * batch once max-lag has passed or batch-size users are pending. Until then
+ * readers see buffered changes through pendingStatus. The buffer is flushed
+ * one last time on shutdown.
+ */
+@Component
+public class UserStatusWriter {
+
+    private final Logger log = LoggerFactory.getLogger(UserStatusWriter.class);
+
+    private final UserRepository userRepository;
+
+    private final UserCache userCache;
+
+    private final boolean writeBehind;
+
+    private final Duration maxLag;
+
+    private final int batchSize;
+
+    private final ConcurrentMap<Long, UserStatus> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final AtomicLong bufferedChanges = new AtomicLong();
+
+    private final Object flushLock = new Object();
+
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public UserStatusWriter(@Qualifier("userRepository") UserRepository userRepository, UserCache userCache,
+                            @Value("${users.presence.write-behind.enabled:false}") boolean writeBehind,
+                            @Value("${users.presence.write-behind.max-lag:500ms}") Duration maxLag,
+                            @Value("${users.presence.write-behind.batch-size:500}") int batchSize) {
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.writeBehind = writeBehind;
+        this.maxLag = maxLag;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (writeBehind) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-status-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long lagMillis = Math.max(1, maxLag.toMillis());
+            flusher.scheduleWithFixedDelay(this::flushQuietly, lagMillis, lagMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void write(long userId, UserStatus status) {
+        if (!writeBehind) {
+            userRepository.updateStatusById(userId, status);
+            return;
+        }
+        // only buffer changes whose transaction actually commits
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    buffer(userId, status);
+                }
+            });
+        }
+        else {
+            buffer(userId, status);
+        }
+    }
+
+    /**
+     * Returns the status of the user that is not written to the database
+     * yet, or null if there is none.
+     */
+    public UserStatus pendingStatus(long userId) {
+        return writeBehind ? pending.get(userId) : null;
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Number of changes buffered since startup. Buffered changes are not yet
+     * reflected in the row versions, this counter tells readers that the
+     * status overlay changed.
+     */
+    public long getBufferedChanges() {
+        return bufferedChanges.get();
+    }
+
+    /**
+     * Writes all buffered changes. Entries are only removed from the buffer
+     * once written, and only if they did not change in the meantime.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            Map<UserStatus, List<Long>> byStatus = new EnumMap<>(UserStatus.class);
+            Map<Long, UserStatus> snapshot = new HashMap<>(pending);
+            snapshot.forEach((userId, status) -> byStatus.computeIfAbsent(status, s -> new ArrayList<>()).add(userId));
+
+            for (Map.Entry<UserStatus, List<Long>> entry : byStatus.entrySet()) {
+                List<Long> userIds = entry.getValue();
+                for (int from = 0; from < userIds.size(); from += batchSize) {
+                    List<Long> batch = userIds.subList(from, Math.min(from + batchSize, userIds.size()));
+                    userRepository.updateStatusByIdIn(batch, entry.getKey());
+                    for (Long userId : batch) {
+                        userCache.invalidate(userId);
+                        pending.remove(userId, entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(maxLag.toMillis() + 5000, TimeUnit.MILLISECONDS);
+            // durability flush, nothing may stay in the buffer
+            flush();
+        }
+    }
+
+    private void buffer(long userId, UserStatus status) {
+        pending.put(userId, status);
+        bufferedChanges.incrementAndGet();
+        if (pending.size() >= batchSize && flusher != null && !flusher.isShutdown()
+                && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        }
+        catch (RuntimeException e) {
+            // keep the buffer and the schedule, the next run retries
+            log.error("Writing {} buffered status changes failed", pending.size(), e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Username Filter
+ * Bloom filter over all taken usernames, so the uniqueness check of a new
+ * username only queries the database when the name might be taken. It never
+ * misses a name that was put, but answers "might be taken" for a small share
+ * of new names (false positives). The bit array is sized for the configured
+ * number of names and false positive rate; past that number the rate rises,
+ * the estimated rate is exposed as a gauge. Names cannot be removed, a
+ * renamed user's old name stays a false positive until the next start.
+ * Until load is finished every name counts as possibly taken.
+ */
+@Component
+public class UsernameFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final LongAdder setBits = new LongAdder();
+
+    private final LongAdder insertions = new LongAdder();
+
+    private final Counter absent;
+
+    private final Counter probable;
+
+    private final Counter falsePositives;
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public UsernameFilter(@Value("${users.username-filter.expected-insertions:1000000}") long expectedInsertions,
+                          @Value("${users.username-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                          MeterRegistry meterRegistry) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Username filter needs expected insertions > 0 and a false positive rate in (0, 1)");
+        }
+        // m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions, the optimum for n names at rate p
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = Math.toIntExact((optimalBits + Long.SIZE - 1) / Long.SIZE);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+
+        this.absent = checkCounter(meterRegistry, "absent");
+        this.probable = checkCounter(meterRegistry, "probable");
+        this.falsePositives = Counter.builder("users.username-filter.false-positives")
+                .description("Usernames the filter reported as possibly taken that were free")
+                .register(meterRegistry);
+        Gauge.builder("users.username-filter.size", this, filter -> filter.bitCount / Byte.SIZE)
+                .description("Memory taken by the bit array")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("users.username-filter.insertions", insertions, LongAdder::sum)
+                .description("Usernames put into the filter")
+                .register(meterRegistry);
+        Gauge.builder("users.username-filter.false-positive-rate.expected", () -> falsePositiveRate)
+                .description("Configured false positive rate at expected-insertions names")
+                .register(meterRegistry);
+        Gauge.builder("users.username-filter.false-positive-rate.estimated", this, UsernameFilter::estimatedFalsePositiveRate)
+                .description("False positive rate at the current fill of the bit array")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns false only if the username is certainly not taken. Before
+     * load is finished it always returns true.
+     */
+    public boolean mightContain(String username) {
+        if (!loaded) {
+            return true;
+        }
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                absent.increment();
+                return false;
+            }
+        }
+        probable.increment();
+        return true;
+    }
+
+    public void put(String username) {
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + (long) i * h2, bitCount);
+            long mask = 1L << index;
+            long previous = bits.getAndAccumulate((int) (index >>> 6), mask, (word, bit) -> word | bit);
+            if ((previous & mask) == 0) {
+                setBits.increment();
+            }
+        }
+        insertions.increment();
+    }
+
+    /**
+     * Called once all existing usernames are put. Names taken while loading
+     * must be put as well, the filter is only consulted from here on.
+     */
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // a name the filter reported as possibly taken turned out to be free
+    public void recordFalsePositive() {
+        if (loaded) {
+            falsePositives.increment();
+        }
+    }
+
+    public double estimatedFalsePositiveRate() {
+        return Math.pow((double) setBits.sum() / bitCount, hashCount);
+    }
+
+    private static Counter checkCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("users.username-filter.checks")
+                .description("Usernames checked against the filter")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // 64-bit FNV-1a over the characters, mixed with the MurmurHash3 finalizer; both halves are used
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
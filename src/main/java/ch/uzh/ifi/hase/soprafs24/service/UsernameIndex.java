@@ -0,0 +1,179 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Username Index
+ * Sorted in-memory index of all usernames for prefix search. Usernames are
+ * kept in skip lists ordered case-insensitively, one over all users and one
+ * per status, so a search with or without a status filter reads only the
+ * matches it returns. Changes made in a transaction are applied once it
+ * commits. The index is filled once at startup (load), until then it
+ * must not be searched.
+ */
+@Component
+public class UsernameIndex {
+
+    // lower-cased username, then the username itself so every key is unique
+    private static final char KEY_SEPARATOR = '\0';
+
+    private final ConcurrentSkipListMap<String, Long> all = new ConcurrentSkipListMap<>();
+
+    private final Map<UserStatus, ConcurrentSkipListMap<String, Long>> byStatus = new EnumMap<>(UserStatus.class);
+
+    // what is indexed per user id, so renames and status changes find the old keys
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public UsernameIndex(MeterRegistry meterRegistry) {
+        for (UserStatus status : UserStatus.values()) {
+            byStatus.put(status, new ConcurrentSkipListMap<>());
+        }
+        // the skip lists count their entries one by one, the entries map knows its size
+        Gauge.builder("users.search.index.size", entries, Map::size)
+                .description("Users in the prefix search index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the ids of up to limit users whose username starts with the
+     * prefix, ignoring case, in alphabetical order. A status restricts the
+     * search to users with that status.
+     */
+    public List<Long> search(String prefix, UserStatus status, int limit) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        ConcurrentSkipListMap<String, Long> usernames = status == null ? all : byStatus.get(status);
+        List<Long> ids = new ArrayList<>(limit);
+        for (Long id : usernames.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            ids.add(id);
+            if (ids.size() == limit) {
+                break;
+            }
+        }
+        return ids;
+    }
+
+    public void put(long id, String username, UserStatus status) {
+        afterCommit(() -> update(id, key(username), status, false));
+    }
+
+    public void rename(long id, String username) {
+        afterCommit(() -> update(id, key(username), null, false));
+    }
+
+    public void updateStatus(long id, UserStatus status) {
+        afterCommit(() -> update(id, null, status, false));
+    }
+
+    /**
+     * Adds a user read while loading. Changes applied since the user was read
+     * are newer and are kept.
+     */
+    public void load(long id, String username, UserStatus status) {
+        update(id, key(username), status, true);
+    }
+
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // a null key or status keeps the current one
+    private void update(long id, String key, UserStatus status, boolean keepCurrent) {
+        entries.compute(id, (ignored, current) -> {
+            String newKey = key;
+            UserStatus newStatus = status;
+            if (current != null) {
+                if (newKey == null || (keepCurrent && current.key != null)) {
+                    newKey = current.key;
+                }
+                if (newStatus == null || (keepCurrent && current.status != null)) {
+                    newStatus = current.status;
+                }
+                unlink(id, current);
+            }
+            else if (loaded && (key == null || status == null)) {
+                // a user created elsewhere (another instance), its username is not known here
+                return null;
+            }
+            // while loading a change can arrive before the user is read, what it knows is kept for the load
+            Entry entry = new Entry(newKey, newStatus);
+            link(id, entry);
+            return entry;
+        });
+    }
+
+    private void link(long id, Entry entry) {
+        if (entry.key == null) {
+            return;
+        }
+        all.put(entry.key, id);
+        if (entry.status != null) {
+            byStatus.get(entry.status).put(entry.key, id);
+        }
+    }
+
+    private void unlink(long id, Entry entry) {
+        if (entry.key == null) {
+            return;
+        }
+        all.remove(entry.key, id);
+        if (entry.status != null) {
+            byStatus.get(entry.status).remove(entry.key, id);
+        }
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT) + KEY_SEPARATOR + username;
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        }
+        else {
+            change.run();
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+
+        private final UserStatus status;
+
+        private Entry(String key, UserStatus status) {
+            this.key = key;
+            this.status = status;
+        }
+    }
+}
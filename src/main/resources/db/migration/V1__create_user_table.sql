@@ -0,0 +1,16 @@
+-- Baseline: the USER table as Hibernate used to generate it from the User entity
+CREATE SEQUENCE HIBERNATE_SEQUENCE START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE USER (
+    ID            BIGINT       NOT NULL,
+    BIRTHDAY      VARCHAR(255),
+    CREATION_DATE VARCHAR(255) NOT NULL,
+    NAME          VARCHAR(255) NOT NULL,
+    PASSWORD      VARCHAR(255) NOT NULL,
+    STATUS        INTEGER      NOT NULL,
+    TOKEN         VARCHAR(255) NOT NULL,
+    USERNAME      VARCHAR(255) NOT NULL,
+    CONSTRAINT PK_USER PRIMARY KEY (ID),
+    CONSTRAINT UK_USER_USERNAME UNIQUE (USERNAME),
+    CONSTRAINT UK_USER_TOKEN UNIQUE (TOKEN)
+);
@@ -0,0 +1,7 @@
+-- username and token are already indexed through their unique constraints
+
+-- logInUser looks users up by name
+CREATE INDEX IDX_USER_NAME ON USER (NAME);
+
+-- authenticateUser only accepts tokens of ONLINE users
+CREATE INDEX IDX_USER_TOKEN_STATUS ON USER (TOKEN, STATUS);
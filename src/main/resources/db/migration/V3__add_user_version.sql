@@ -0,0 +1,10 @@
+-- VERSION is drawn from one sequence for the whole table, on insert and again on every update,
+-- so it orders all changes: a user changed after version v has a VERSION > v, and MAX(VERSION)
+-- is a version of the whole list
+CREATE SEQUENCE USER_VERSION_SEQ START WITH 1 INCREMENT BY 1;
+
+ALTER TABLE USER ADD COLUMN VERSION BIGINT DEFAULT NEXT VALUE FOR USER_VERSION_SEQ
+    ON UPDATE NEXT VALUE FOR USER_VERSION_SEQ NOT NULL;
+
+-- delta queries (?since=) and the list version
+CREATE INDEX IDX_USER_VERSION ON USER (VERSION);
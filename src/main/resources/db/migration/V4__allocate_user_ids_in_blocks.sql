@@ -0,0 +1,4 @@
+-- Hibernate reserves user ids in blocks of 50 (pooled optimizer): each value drawn from the sequence
+-- is the highest id of a block of 50 that belongs to whoever drew it. Existing ids stay below the
+-- next value, so no block overlaps them. Must match allocationSize on User.id
+ALTER SEQUENCE HIBERNATE_SEQUENCE INCREMENT BY 50;
@@ -0,0 +1,19 @@
+-- Tokens become 16 raw bytes instead of 36 characters of UUID text, which narrows the unique
+-- index and IDX_USER_TOKEN_STATUS that every token lookup goes through. Existing UUID tokens keep
+-- their bytes, so clients holding them stay logged in; any other value gets a fresh random token
+ALTER TABLE USER ADD COLUMN TOKEN_VALUE BINARY(16);
+
+UPDATE USER SET TOKEN_VALUE = CASE
+    WHEN REGEXP_LIKE(REPLACE(TOKEN, '-', ''), '^[0-9a-fA-F]{32}$') THEN CAST(REPLACE(TOKEN, '-', '') AS BINARY(16))
+    ELSE CAST(RANDOM_UUID() AS BINARY(16))
+END;
+
+DROP INDEX IDX_USER_TOKEN_STATUS;
+ALTER TABLE USER DROP CONSTRAINT UK_USER_TOKEN;
+ALTER TABLE USER DROP COLUMN TOKEN;
+ALTER TABLE USER ALTER COLUMN TOKEN_VALUE RENAME TO TOKEN;
+ALTER TABLE USER ALTER COLUMN TOKEN SET NOT NULL;
+ALTER TABLE USER ADD CONSTRAINT UK_USER_TOKEN UNIQUE (TOKEN);
+
+-- authenticateUser only accepts tokens of ONLINE users
+CREATE INDEX IDX_USER_TOKEN_STATUS ON USER (TOKEN, STATUS);
@@ -0,0 +1,32 @@
+-- CREATION_DATE held the text of java.util.Date#toString and BIRTHDAY free text (dd.MM.yyyy so far).
+-- Both become typed columns that can be compared, sorted and range-scanned through an index.
+-- Values in another format cannot be recovered: creation dates fall back to the time of the
+-- migration, birthdays to NULL
+ALTER TABLE USER ADD COLUMN CREATION_TIME TIMESTAMP;
+ALTER TABLE USER ADD COLUMN BIRTH_DATE DATE;
+
+UPDATE USER SET
+    CREATION_TIME = CASE
+        WHEN REGEXP_LIKE(CREATION_DATE, '^[A-Z][a-z]{2} [A-Z][a-z]{2} [0-9]{2} [0-9]{2}:[0-9]{2}:[0-9]{2} [A-Za-z+:0-9_/-]+ [0-9]{4}$')
+            THEN PARSEDATETIME(CREATION_DATE, 'EEE MMM dd HH:mm:ss zzz yyyy', 'en')
+        ELSE CURRENT_TIMESTAMP
+    END,
+    BIRTH_DATE = CASE
+        WHEN REGEXP_LIKE(BIRTHDAY, '^[0-9]{2}\.[0-9]{2}\.[0-9]{4}$') THEN CAST(PARSEDATETIME(BIRTHDAY, 'dd.MM.yyyy') AS DATE)
+        WHEN REGEXP_LIKE(BIRTHDAY, '^[0-9]{4}-[0-9]{2}-[0-9]{2}$') THEN CAST(BIRTHDAY AS DATE)
+        ELSE NULL
+    END;
+
+ALTER TABLE USER DROP COLUMN CREATION_DATE;
+ALTER TABLE USER DROP COLUMN BIRTHDAY;
+ALTER TABLE USER ALTER COLUMN CREATION_TIME RENAME TO CREATION_DATE;
+ALTER TABLE USER ALTER COLUMN BIRTH_DATE RENAME TO BIRTHDAY;
+ALTER TABLE USER ALTER COLUMN CREATION_DATE SET NOT NULL;
+
+-- users created between two points in time
+CREATE INDEX IDX_USER_CREATION_DATE ON USER (CREATION_DATE);
+
+-- birthdays within a range of days of any year (birthdays this week): an index needs the day of the
+-- year without the year, kept as month * 100 + day so Feb 29 sorts between Feb 28 and Mar 1
+ALTER TABLE USER ADD COLUMN BIRTHDAY_MONTH_DAY INT AS (MONTH(BIRTHDAY) * 100 + DAY_OF_MONTH(BIRTHDAY));
+CREATE INDEX IDX_USER_BIRTHDAY_MONTH_DAY ON USER (BIRTHDAY_MONTH_DAY);
@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that endpoint latencies, repository timings and pool gauges are
+ * exposed on the Prometheus scrape endpoint.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics // tests export no metrics unless asked to
+public class MetricsIntegrationTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Test
+  public void prometheusEndpoint_exposesRequestRepositoryAndPoolMetrics() throws Exception {
+    mockMvc.perform(get("/users")).andExpect(status().isOk());
+
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().isOk())
+        .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+        .andExpect(content().string(containsString("uri=\"/users\"")))
+        .andExpect(content().string(containsString("users_repository_invocations_seconds_count{")))
+        .andExpect(content().string(containsString("method=\"findAllSummaries\"")))
+        .andExpect(content().string(containsString("hikaricp_connections_active")));
+  }
+}
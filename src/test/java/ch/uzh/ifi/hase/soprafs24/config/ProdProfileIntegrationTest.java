@@ -0,0 +1,69 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.Application;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the application with the prod profile on a database file in a
+ * temporary directory, twice, to check that users survive a restart and that
+ * the pool is filled during startup. The database password is passed the way
+ * USERS_DB_PASSWORD would set it.
+ */
+public class ProdProfileIntegrationTest {
+
+  @TempDir
+  Path dataDirectory;
+
+  @Test
+  public void prodProfile_usersSurviveRestart() {
+    try (ConfigurableApplicationContext context = start()) {
+      User user = new User();
+      user.setName("name");
+      user.setUsername("username");
+      user.setPassword("password");
+      context.getBean(UserService.class).createUser(user);
+    }
+
+    try (ConfigurableApplicationContext context = start()) {
+      assertNotNull(context.getBean(UserRepository.class).findByUsername("username"));
+    }
+  }
+
+  @Test
+  public void prodProfile_poolFilledOnStartup() {
+    try (ConfigurableApplicationContext context = start()) {
+      HikariDataSource dataSource = (HikariDataSource) context.getBean(DataSource.class);
+
+      assertEquals(3, dataSource.getHikariPoolMXBean().getTotalConnections());
+    }
+  }
+
+  @Test
+  public void prodProfile_h2ConsoleDisabled() {
+    try (ConfigurableApplicationContext context = start()) {
+      assertFalse(context.containsBean("h2Console"));
+    }
+  }
+
+  private ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(Application.class)
+        .profiles("prod")
+        .properties("server.port=0",
+            "users.db.path=" + dataDirectory.resolve("users").toAbsolutePath(),
+            "users.db.pool-size=3",
+            "users.db.password=password")
+        .run();
+  }
+}
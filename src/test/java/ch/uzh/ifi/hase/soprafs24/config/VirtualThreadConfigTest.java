@@ -0,0 +1,32 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VirtualThreadConfigTest
+ * Checks the request executor of the virtual-threads mode on the JVM running
+ * the tests.
+ */
+public class VirtualThreadConfigTest {
+
+  @Test
+  public void newVirtualThreadPerTaskExecutor_runsTasksOnVirtualThreads() throws Exception {
+    if (Runtime.version().feature() < 21) {
+      // no virtual threads before Java 21, the mode must fail at startup instead of silently using platform threads
+      assertThrows(IllegalStateException.class, VirtualThreadConfig::newVirtualThreadPerTaskExecutor);
+      return;
+    }
+    ExecutorService executor = VirtualThreadConfig.newVirtualThreadPerTaskExecutor();
+    try {
+      Boolean virtual = executor.submit(() -> (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get();
+      assertTrue(virtual);
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.EditPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LogoutPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs24.service.OnlineUsers;
+import ch.uzh.ifi.hase.soprafs24.service.UsernameFilter;
+import ch.uzh.ifi.hase.soprafs24.service.UsernameIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the user flow against the reactive API on a real Netty server: create,
+ * login, /me, /users/{id}, logout.
+ */
+@ActiveProfiles("reactive")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "users.password.iterations=1000")
+public class ReactiveUserApiIntegrationTest {
+
+  @Autowired
+  private WebTestClient webTestClient;
+
+  @Autowired
+  private ApplicationContext applicationContext;
+
+  @Autowired
+  private UsernameIndex usernameIndex;
+
+  @Autowired
+  private UsernameFilter usernameFilter;
+
+  @Autowired
+  private OnlineUsers onlineUsers;
+
+  @Test
+  public void createLoginReadLogout() {
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setName("reactiveName");
+    userPostDTO.setUsername("reactiveUsername");
+    userPostDTO.setPassword("password");
+
+    UserGetDTO created = webTestClient.post().uri("/users").bodyValue(userPostDTO)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody(UserGetDTO.class)
+        .returnResult().getResponseBody();
+    assertNotNull(created);
+    assertEquals("reactiveUsername", created.getUsername());
+    assertEquals(UserStatus.OFFLINE, created.getStatus());
+
+    // the username is taken now
+    webTestClient.post().uri("/users").bodyValue(userPostDTO)
+        .exchange()
+        .expectStatus().isEqualTo(409);
+
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("reactiveName");
+    loginPostDTO.setPassword("password");
+    LogoutPutDTO session = webTestClient.post().uri("/login").bodyValue(loginPostDTO)
+        .exchange()
+        .expectStatus().isAccepted()
+        .expectBody(LogoutPutDTO.class)
+        .returnResult().getResponseBody();
+    assertNotNull(session);
+    String token = session.getToken();
+
+    webTestClient.get().uri("/me").header("Authorization", "Bearer " + token)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$.username").isEqualTo("reactiveUsername")
+        .jsonPath("$.status").isEqualTo("ONLINE");
+
+    webTestClient.get().uri("/users").exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$[?(@.username == 'reactiveUsername')]").exists();
+
+    webTestClient.put().uri("/logout").bodyValue(session)
+        .exchange()
+        .expectStatus().isOk();
+
+    webTestClient.get().uri("/users/{id}", created.getId()).header("Authorization", "Bearer " + token)
+        .exchange()
+        .expectStatus().isUnauthorized();
+
+    loginPostDTO.setPassword("wrong");
+    webTestClient.post().uri("/login").bodyValue(loginPostDTO)
+        .exchange()
+        .expectStatus().isUnauthorized();
+  }
+
+  @Test
+  public void malformedIdOrCursor_badRequest() {
+    webTestClient.get().uri("/users/abc").header("Authorization", "Bearer token")
+        .exchange()
+        .expectStatus().isBadRequest();
+
+    webTestClient.get().uri("/users?size=5&cursor=abc")
+        .exchange()
+        .expectStatus().isBadRequest();
+  }
+
+  @Test
+  public void servletOnlyPaths_notFound() {
+    assertFalse(applicationContext.containsBean("userController"));
+
+    // no route for these, the MVC handlers must not pick them up and fail on their arguments
+    webTestClient.post().uri("/users/bulk").bodyValue(new Long[] {1L})
+        .exchange()
+        .expectStatus().isNotFound();
+
+    webTestClient.get().uri("/users/online/count")
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  @Test
+  public void writes_keepInMemoryStateInSync() {
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setName("syncName");
+    userPostDTO.setUsername("syncUsername");
+    userPostDTO.setPassword("password");
+    UserGetDTO created = webTestClient.post().uri("/users").bodyValue(userPostDTO)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody(UserGetDTO.class)
+        .returnResult().getResponseBody();
+    assertNotNull(created);
+    assertTrue(usernameFilter.mightContain("syncUsername"));
+    assertTrue(usernameIndex.search("syncusername", UserStatus.OFFLINE, 10).contains(created.getId()));
+
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("syncName");
+    loginPostDTO.setPassword("password");
+    webTestClient.post().uri("/login").bodyValue(loginPostDTO)
+        .exchange()
+        .expectStatus().isAccepted();
+    assertTrue(usernameIndex.search("syncusername", UserStatus.ONLINE, 10).contains(created.getId()));
+
+    EditPutDTO editPutDTO = new EditPutDTO();
+    editPutDTO.setUsername("syncRenamed");
+    webTestClient.put().uri("/users/{id}", created.getId()).bodyValue(editPutDTO)
+        .exchange()
+        .expectStatus().isNoContent();
+    assertTrue(usernameFilter.mightContain("syncRenamed"));
+    assertTrue(usernameIndex.search("syncrenamed", UserStatus.ONLINE, 10).contains(created.getId()));
+    assertTrue(usernameIndex.search("syncusername", null, 10).isEmpty());
+    assertTrue(onlineUsers.isOnline(created.getId()));
+  }
+}
@@ -3,8 +3,12 @@ package ch.uzh.ifi.hase.soprafs24.controller;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.EditPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PresenceEventDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DateFormats;
+import ch.uzh.ifi.hase.soprafs24.service.PresenceBroadcaster;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -14,13 +18,22 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest; // lo
 import org.springframework.boot.test.mock.mockito.MockBean; // mocks UserService so real database is not managed
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType; // used to define content type as JSON
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.web.servlet.MockMvc; // mocks HTTP requests and responses
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize; // used for asserting JSON values
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
@@ -44,20 +57,18 @@ public class UserControllerTest {
   @MockBean // mocks the UserService to not make real calls to database
   private UserService userService;
 
+  @MockBean
+  private PresenceBroadcaster presenceBroadcaster;
+
   @MockBean // mocks the UserRepository
   private UserRepository userRepository;
 
   @Test // marks as test
   public void givenUsers_whenGetUsers_thenReturnJsonArray() throws Exception {
     // given setup data
-    User user = new User();
-    user.setId(1L);
-    user.setUsername("firstname@lastname");
-    user.setCreationDate("03.03.2025");
-    user.setStatus(UserStatus.OFFLINE);
-    user.setBirthday("01.01.2000");
+    UserSummary user = new UserSummary(1L, "firstname@lastname", Instant.parse("2025-03-03T10:00:00Z"), LocalDate.of(2000, 1, 1), UserStatus.OFFLINE, 1L);
 
-    List<User> allUsers = Collections.singletonList(user); // list containing above user
+    List<UserSummary> allUsers = Collections.singletonList(user); // list containing above user
 
     // this mocks the UserService -> we define above what the userService should
     // return when getUsers() is called
@@ -72,9 +83,9 @@ public class UserControllerTest {
         .andExpect(jsonPath("$", hasSize(1))) // list has only one user
         .andExpect(jsonPath("$[0].id", is(user.getId().intValue())))
         .andExpect(jsonPath("$[0].username", is(user.getUsername())))
-            .andExpect(jsonPath("$[0].creationDate", is(user.getCreationDate())))
+            .andExpect(jsonPath("$[0].creationDate", is(DateFormats.formatCreationDate(user.getCreationDate()))))
             .andExpect(jsonPath("$[0].status", is(user.getStatus().toString())))
-            .andExpect(jsonPath("$[0].birthday", is(user.getBirthday())));
+            .andExpect(jsonPath("$[0].birthday", is(DateFormats.formatBirthday(user.getBirthday()))));
 
   }
 
@@ -86,8 +97,8 @@ public class UserControllerTest {
     user.setName("Test User");
     user.setUsername("testUsername");
     user.setPassword("testPassword");
-    user.setCreationDate("03.03.2025");
-    user.setBirthday("01.01.2000");
+    user.setCreationDate(Instant.parse("2025-03-03T10:00:00Z"));
+    user.setBirthday(LocalDate.of(2000, 1, 1));
     user.setToken("1");
     user.setStatus(UserStatus.ONLINE);
 
@@ -108,9 +119,68 @@ public class UserControllerTest {
         .andExpect(status().isCreated())
         .andExpect(jsonPath("$.id", is(user.getId().intValue())))
         .andExpect(jsonPath("$.username", is(user.getUsername())))
-            .andExpect(jsonPath("$.creationDate", is(user.getCreationDate())))
+            .andExpect(jsonPath("$.creationDate", is(DateFormats.formatCreationDate(user.getCreationDate()))))
         .andExpect(jsonPath("$.status", is(user.getStatus().toString())))
-            .andExpect(jsonPath("$.birthday", is(user.getBirthday())));
+            .andExpect(jsonPath("$.birthday", is(DateFormats.formatBirthday(user.getBirthday()))));
+  }
+
+  @Test
+  public void importUsers_ndjson_reportsFailuresByPosition() throws Exception {
+    // given -> the second user is rejected
+    given(userService.createUsers(anyList())).willReturn(Collections.singletonMap(1, "The username provided is not unique. Therefore, the user could not be created!"));
+
+    String body = "{\"name\":\"a\",\"username\":\"first\",\"password\":\"p\"}\n"
+        + "{\"name\":\"b\",\"username\":\"taken\",\"password\":\"p\"}\n"
+        + "{\"name\":\"c\",\"username\":\"third\",\"password\":\"p\"}\n";
+
+    // when/then
+    mockMvc.perform(post("/users/bulk").contentType(MediaType.APPLICATION_NDJSON).content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.created", is(2)))
+        .andExpect(jsonPath("$.errors", hasSize(1)))
+        .andExpect(jsonPath("$.errors[0].index", is(1)))
+        .andExpect(jsonPath("$.errors[0].username", is("taken")));
+    verify(userService).createUsers(argThat(users -> users.size() == 3
+        && users.get(2).getUsername().equals("third")));
+  }
+
+  @Test
+  public void importUsers_jsonArray_malformedTailStopsImport() throws Exception {
+    // given
+    given(userService.createUsers(anyList())).willReturn(Collections.emptyMap());
+
+    String body = "[{\"name\":\"a\",\"username\":\"first\",\"password\":\"p\"}, {\"name\": ";
+
+    // when/then -> the complete user is created, the broken one is reported
+    mockMvc.perform(post("/users/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.created", is(1)))
+        .andExpect(jsonPath("$.errors[0].index", is(1)));
+  }
+
+  @Test
+  public void importUsers_nonObjectStopsImport() throws Exception {
+    // given
+    given(userService.createUsers(anyList())).willReturn(Collections.emptyMap());
+
+    String arrayBody = "[{\"name\":\"a\",\"username\":\"first\",\"password\":\"p\"}, [1], "
+        + "{\"name\":\"c\",\"username\":\"third\",\"password\":\"p\"}]";
+    String ndjsonBody = "{\"name\":\"a\",\"username\":\"first\",\"password\":\"p\"}\n"
+        + "{\"name\":\"b\",\"username\":\"second\",\"password\":\"p\"}\n"
+        + "42\n";
+
+    // when/then -> the users before the array element or scalar are created, the import stops there
+    mockMvc.perform(post("/users/bulk").contentType(MediaType.APPLICATION_JSON).content(arrayBody))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.created", is(1)))
+        .andExpect(jsonPath("$.errors", hasSize(1)))
+        .andExpect(jsonPath("$.errors[0].index", is(1)));
+
+    mockMvc.perform(post("/users/bulk").contentType(MediaType.APPLICATION_NDJSON).content(ndjsonBody))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.created", is(2)))
+        .andExpect(jsonPath("$.errors", hasSize(1)))
+        .andExpect(jsonPath("$.errors[0].index", is(2)));
   }
 
   @Test
@@ -140,12 +210,7 @@ public class UserControllerTest {
   @Test
   public void givenUserId_whenGetUserById_thenReturnJson() throws Exception {
       //given
-      User user = new User();
-      user.setId(1L);
-      user.setUsername("testUsername");
-      user.setCreationDate("03.03.2025");
-      user.setStatus(UserStatus.ONLINE);
-      user.setBirthday("01.01.2000");
+      UserSummary user = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), LocalDate.of(2000, 1, 1), UserStatus.ONLINE, 1L);
 
       // mock
       given(userService.authenticateUser(anyString())).willReturn(true);
@@ -161,10 +226,158 @@ public class UserControllerTest {
               .andExpect(status().isOk())
               .andExpect(jsonPath("$.id", is(user.getId().intValue())))
               .andExpect(jsonPath("$.username", is(user.getUsername())))
-              .andExpect(jsonPath("$.creationDate", is(user.getCreationDate())))
+              .andExpect(jsonPath("$.creationDate", is(DateFormats.formatCreationDate(user.getCreationDate()))))
               .andExpect(jsonPath("$.status", is(user.getStatus().toString())))
-              .andExpect(jsonPath("$.birthday", is(user.getBirthday())));
+              .andExpect(jsonPath("$.birthday", is(DateFormats.formatBirthday(user.getBirthday()))));
+
+  }
+
+  @Test
+  public void givenMatchingETag_whenGetUserById_thenReturn304() throws Exception {
+      // given -> version 7, ONLINE
+      UserSummary user = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 7L);
+      given(userService.authenticateUser(anyString())).willReturn(true);
+      given(userService.getUserById(1L)).willReturn(user);
+
+      // first request returns the tag
+      mockMvc.perform(get("/users/1").header("Authorization", "Bearer testToken"))
+              .andExpect(status().isOk())
+              .andExpect(header().string("ETag", "\"7.0\""))
+              .andExpect(jsonPath("$.version", is(7)));
+
+      // then -> repeating it with the tag returns no body
+      mockMvc.perform(get("/users/1").header("Authorization", "Bearer testToken")
+                      .header("If-None-Match", "\"7.0\""))
+              .andExpect(status().isNotModified())
+              .andExpect(content().string(""));
+  }
+
+  @Test
+  public void givenMatchingETag_whenGetUsers_thenReturn304WithoutLoading() throws Exception {
+      // given
+      given(userService.getUsersVersion()).willReturn("42.0");
+
+      // when/then
+      mockMvc.perform(get("/users").header("If-None-Match", "\"42.0\""))
+              .andExpect(status().isNotModified())
+              .andExpect(header().string("ETag", "\"42.0\""));
+      verify(userService, never()).getUsers();
+
+      // a changed list is returned in full with the new tag
+      given(userService.getUsersVersion()).willReturn("43.0");
+      given(userService.getUsers()).willReturn(Collections.emptyList());
+      mockMvc.perform(get("/users").header("If-None-Match", "\"42.0\""))
+              .andExpect(status().isOk())
+              .andExpect(header().string("ETag", "\"43.0\""));
+  }
+
+  @Test
+  public void givenSince_whenGetUsers_thenReturnChangedUsersOnly() throws Exception {
+      // given
+      UserSummary changed = new UserSummary(2L, "changed", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 12L);
+      given(userService.getUsersVersion()).willReturn("12.0");
+      given(userService.getUsersChangedSince(10L)).willReturn(Collections.singletonList(changed));
+
+      // when/then
+      mockMvc.perform(get("/users").param("since", "10"))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(1)))
+              .andExpect(jsonPath("$[0].id", is(2)))
+              .andExpect(jsonPath("$[0].version", is(12)));
+      verify(userService, never()).getUsers();
+  }
+
+  @Test
+  public void givenIds_whenLookup_thenRequestOrderWithNotFoundMarkers() throws Exception {
+      // given -> user 2 does not exist
+      Map<Long, UserSummary> found = new HashMap<>();
+      found.put(1L, new UserSummary(1L, "first", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 1L));
+      found.put(3L, new UserSummary(3L, "third", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 3L));
+      given(userService.authenticateUser(anyString())).willReturn(true);
+      given(userService.getUsersByIds(anyList())).willReturn(found);
+
+      // when/then
+      mockMvc.perform(get("/users").param("ids", "3,2,1").header("Authorization", "Bearer testToken"))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(3)))
+              .andExpect(jsonPath("$[0].id", is(3)))
+              .andExpect(jsonPath("$[0].user.username", is("third")))
+              .andExpect(jsonPath("$[1].id", is(2)))
+              .andExpect(jsonPath("$[1].found", is(false)))
+              .andExpect(jsonPath("$[2].found", is(true)))
+              .andExpect(jsonPath("$[2].user.status", is("ONLINE")));
+      verify(userService, times(1)).authenticateUser("testToken");
+  }
+
+  @Test
+  public void givenDay_whenGetBirthdays_thenReturnUsersOfThatWeek() throws Exception {
+      // given
+      UserSummary user = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"),
+              LocalDate.of(2000, 3, 5), UserStatus.OFFLINE, 1L);
+      given(userService.getUsersWithBirthdayInWeekOf(LocalDate.of(2025, 3, 5))).willReturn(Collections.singletonList(user));
+
+      // when/then
+      mockMvc.perform(get("/users/birthdays").param("day", "2025-03-05"))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(1)))
+              .andExpect(jsonPath("$[0].birthday", is("05.03.2000")));
+  }
+
+  @Test
+  public void givenOnlineUsers_whenGetOnlineUsersAndCount_thenReturnThem() throws Exception {
+      // given
+      UserSummary user = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null,
+              UserStatus.ONLINE, 1L);
+      given(userService.getOnlineUsers()).willReturn(Collections.singletonList(user));
+      given(userService.countOnlineUsers()).willReturn(1L);
 
+      // when/then
+      mockMvc.perform(get("/users/online"))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(1)))
+              .andExpect(jsonPath("$[0].status", is("ONLINE")));
+      mockMvc.perform(get("/users/online/count"))
+              .andExpect(status().isOk())
+              .andExpect(content().string("1"));
+  }
+
+  @Test
+  public void givenPrefix_whenSearchUsers_thenReturnMatches() throws Exception {
+      // given
+      UserSummary user = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null,
+              UserStatus.ONLINE, 1L);
+      given(userService.searchUsers("te", UserStatus.ONLINE, 5)).willReturn(Collections.singletonList(user));
+
+      // when/then
+      mockMvc.perform(get("/users/search").param("prefix", "te").param("status", "ONLINE").param("limit", "5"))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(1)))
+              .andExpect(jsonPath("$[0].username", is("testUsername")));
+  }
+
+  @Test
+  public void givenBlankPrefixOrLimitTooLarge_whenSearchUsers_thenReturn400() throws Exception {
+      mockMvc.perform(get("/users/search").param("prefix", " "))
+              .andExpect(status().isBadRequest());
+      mockMvc.perform(get("/users/search").param("prefix", "te").param("limit", "100000"))
+              .andExpect(status().isBadRequest());
+      verify(userService, never()).searchUsers(any(), any(), anyInt());
+  }
+
+  @Test
+  public void givenPeriod_whenGetUsers_thenReturnUsersCreatedInIt() throws Exception {
+      // given
+      Instant from = Instant.parse("2025-03-01T00:00:00Z");
+      Instant to = Instant.parse("2025-04-01T00:00:00Z");
+      UserSummary user = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null,
+              UserStatus.OFFLINE, 1L);
+      given(userService.getUsersCreatedBetween(from, to)).willReturn(Collections.singletonList(user));
+
+      // when/then
+      mockMvc.perform(get("/users").param("createdFrom", from.toString()).param("createdTo", to.toString()))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$[0].creationDate", is(DateFormats.formatCreationDate(user.getCreationDate()))));
+      verify(userService, never()).getUsers();
   }
 
   @Test
@@ -192,12 +405,8 @@ public class UserControllerTest {
   public void givenValidUserId_whenUpdateUser_thenReturnNoContent() throws Exception {
       // given
       long validUserId = 1L;  // existing user ID
-      User existingUser = new User();
-      existingUser.setId(validUserId);
-      existingUser.setUsername("oldUsername");
-      existingUser.setBirthday("01.01.1990");
-      existingUser.setCreationDate("01.01.2020");
-      existingUser.setStatus(UserStatus.ONLINE);
+      UserSummary existingUser = new UserSummary(validUserId, "oldUsername", Instant.parse("2020-01-01T10:00:00Z"), LocalDate.of(1990, 1, 1),
+              UserStatus.ONLINE, 1L);
 
       // Updated user profile data
       EditPutDTO updatedUser = new EditPutDTO();
@@ -245,6 +454,122 @@ public class UserControllerTest {
               .andExpect(status().reason(is("User not found"))); // Expect the error message
   }
 
+  @Test
+  public void givenToken_whenGetMe_thenReturnJson() throws Exception {
+      // given
+      UserSummary user = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 1L);
+
+      given(userService.getUserByToken("testToken")).willReturn(user);
+
+      // when
+      MockHttpServletRequestBuilder getRequest = get("/me")
+              .header("Authorization", "Bearer testToken")
+              .contentType(MediaType.APPLICATION_JSON);
+
+      // then
+      mockMvc.perform(getRequest)
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$.id", is(user.getId().intValue())))
+              .andExpect(jsonPath("$.username", is(user.getUsername())))
+              .andExpect(jsonPath("$.status", is(user.getStatus().toString())));
+  }
+
+  @Test
+  public void givenPageSize_whenGetUsers_thenReturnPageWithCursor() throws Exception {
+      // given
+      UserSummary first = new UserSummary(1L, "first", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+      UserSummary second = new UserSummary(2L, "second", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+
+      given(userService.getUserPage(null, 2)).willReturn(Arrays.asList(first, second));
+
+      // when
+      MockHttpServletRequestBuilder getRequest = get("/users").param("size", "2")
+              .contentType(MediaType.APPLICATION_JSON);
+
+      // then -> a full page points to the last id it contains
+      mockMvc.perform(getRequest)
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$.users", hasSize(2)))
+              .andExpect(jsonPath("$.users[1].username", is(second.getUsername())))
+              .andExpect(jsonPath("$.nextCursor", is(2)));
+  }
+
+  @Test
+  public void givenLastPage_whenGetUsers_thenNoCursor() throws Exception {
+      // given
+      UserSummary user = new UserSummary(3L, "third", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+
+      given(userService.getUserPage(2L, 2)).willReturn(Collections.singletonList(user));
+
+      // when
+      MockHttpServletRequestBuilder getRequest = get("/users").param("size", "2").param("cursor", "2")
+              .contentType(MediaType.APPLICATION_JSON);
+
+      // then
+      mockMvc.perform(getRequest)
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$.users", hasSize(1)))
+              .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  public void givenTooLargePageSize_whenGetUsers_thenReturn400Error() throws Exception {
+      MockHttpServletRequestBuilder getRequest = get("/users").param("size", "100000")
+              .contentType(MediaType.APPLICATION_JSON);
+
+      mockMvc.perform(getRequest).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void givenCombinedQueryModes_whenGetUsers_thenReturn400Error() throws Exception {
+      mockMvc.perform(get("/users").param("ids", "1").param("size", "5")).andExpect(status().isBadRequest());
+      mockMvc.perform(get("/users").param("since", "10").param("ids", "1")).andExpect(status().isBadRequest());
+      mockMvc.perform(get("/users").param("since", "10").param("stream", "true")).andExpect(status().isBadRequest());
+
+      verifyNoInteractions(userService);
+  }
+
+  @Test
+  public void givenStream_whenGetUsers_thenWritesAllPages() throws Exception {
+      // given -> two pages, the second one is short
+      UserSummary first = new UserSummary(1L, "first", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+      UserSummary second = new UserSummary(2L, "second", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+      UserSummary third = new UserSummary(3L, "third", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+
+      given(userService.getUserPage(null, 2)).willReturn(Arrays.asList(first, second));
+      given(userService.getUserPage(2L, 2)).willReturn(Collections.singletonList(third));
+
+      // when
+      MvcResult mvcResult = mockMvc.perform(get("/users").param("stream", "true").param("size", "2"))
+              .andExpect(request().asyncStarted())
+              .andReturn();
+
+      // then
+      mockMvc.perform(asyncDispatch(mvcResult))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(3)))
+              .andExpect(jsonPath("$[2].username", is(third.getUsername())));
+  }
+
+  @Test
+  public void givenPresenceEvents_whenStreamPresence_thenServerSentEvents() throws Exception {
+      // given
+      given(presenceBroadcaster.subscribe()).willReturn(Flux.just(
+              ServerSentEvent.builder(new PresenceEventDTO(1L, UserStatus.ONLINE)).event("presence").build()));
+
+      // when
+      MvcResult mvcResult = mockMvc.perform(get("/users/presence").accept(MediaType.TEXT_EVENT_STREAM))
+              .andExpect(request().asyncStarted())
+              .andReturn();
+
+      // then
+      mockMvc.perform(asyncDispatch(mvcResult))
+              .andExpect(status().isOk())
+              .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+              .andExpect(content().string(containsString("event:presence")))
+              .andExpect(content().string(containsString("data:{\"id\":1,\"status\":\"ONLINE\"}")));
+  }
+
   /**
    * Helper Method to convert userPostDTO into a JSON string such that the input
    * can be processed
@@ -1,14 +1,24 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.TokenConverter;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DataJpaTest // Spring Boot annotation to test JPA repositories with an in-memory database
 public class UserRepositoryIntegrationTest { // declares a test class to verify UserRepository methods work
@@ -26,10 +36,10 @@ public class UserRepositoryIntegrationTest { // declares a test class to verify
     user.setName("Firstname Lastname");
     user.setUsername("firstname@lastname");
     user.setPassword("password");
-    user.setBirthday("01.01.2000");
-    user.setCreationDate("03.03.2025");
+    user.setBirthday(LocalDate.of(2000, 1, 1));
+    user.setCreationDate(Instant.parse("2025-03-03T10:00:00Z"));
     user.setStatus(UserStatus.OFFLINE);
-    user.setToken("1");
+    user.setToken(token(1));
 
     entityManager.persist(user);
     entityManager.flush();
@@ -47,4 +57,155 @@ public class UserRepositoryIntegrationTest { // declares a test class to verify
     assertEquals(found.getToken(), user.getToken());
     assertEquals(found.getStatus(), user.getStatus());
   }
+
+  @Test
+  public void findSummariesAfter_returnsNextPageInIdOrder() {
+    // given
+    User first = persistUser("first", 1);
+    User second = persistUser("second", 2);
+    User third = persistUser("third", 3);
+    entityManager.flush();
+
+    // when
+    List<UserSummary> page = userRepository.findSummariesAfter(first.getId(), PageRequest.of(0, 1));
+
+    // then
+    assertEquals(1, page.size());
+    assertEquals(second.getId(), page.get(0).getId());
+    assertEquals(second.getUsername(), page.get(0).getUsername());
+    assertEquals(third.getId(), userRepository.findSummariesAfter(second.getId(), PageRequest.of(0, 5)).get(0).getId());
+  }
+
+  @Test
+  public void findSummariesByIdIn_unknownIdsSkipped() {
+    // given
+    User first = persistUser("first", 1);
+    User second = persistUser("second", 2);
+    entityManager.flush();
+
+    // when
+    List<UserSummary> found = userRepository.findSummariesByIdIn(Arrays.asList(second.getId(), first.getId(), -1L));
+
+    // then
+    assertEquals(2, found.size());
+    assertTrue(found.stream().anyMatch(user -> user.getId().equals(first.getId())));
+    assertTrue(found.stream().anyMatch(user -> user.getId().equals(second.getId())));
+  }
+
+  @Test
+  public void persist_idsAllocatedFromBlock() {
+    // given -> the first insert reserves a block of ids
+    User first = persistUser("first", 1);
+    User second = persistUser("second", 2);
+    User third = persistUser("third", 3);
+
+    // then -> the following ones are handed out from memory, in order
+    assertEquals(first.getId() + 1, second.getId());
+    assertEquals(second.getId() + 1, third.getId());
+  }
+
+  @Test
+  public void findSummaryByToken_selectsApiColumns() {
+    // given
+    User user = persistUser("firstname@lastname", 1);
+    user.setBirthday(LocalDate.of(2000, 1, 1));
+    entityManager.flush();
+
+    // when
+    UserSummary found = userRepository.findSummaryByToken(token(1)).orElseThrow(AssertionError::new);
+
+    // then
+    assertEquals(user.getId(), found.getId());
+    assertEquals(user.getUsername(), found.getUsername());
+    assertEquals(user.getCreationDate(), found.getCreationDate());
+    assertEquals(user.getBirthday(), found.getBirthday());
+    assertEquals(user.getStatus(), found.getStatus());
+  }
+
+  @Test
+  public void findSummariesCreatedBetween_fromInclusiveToExclusive() {
+    // given
+    User early = persistUser("early", 1);
+    early.setCreationDate(Instant.parse("2025-01-01T00:00:00Z"));
+    User late = persistUser("late", 2);
+    late.setCreationDate(Instant.parse("2025-02-01T00:00:00Z"));
+    entityManager.flush();
+
+    // when
+    List<UserSummary> found = userRepository.findSummariesCreatedBetween(
+        Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-02-01T00:00:00Z"));
+
+    // then
+    assertEquals(1, found.size());
+    assertEquals(early.getId(), found.get(0).getId());
+    assertEquals(early.getCreationDate(), found.get(0).getCreationDate());
+  }
+
+  @Test
+  public void findSummariesByBirthdayBetween_anyYear() {
+    // given -> the database derives the month and day of each birthday
+    User march = persistUser("march", 1);
+    march.setBirthday(LocalDate.of(1990, 3, 5));
+    User leapDay = persistUser("leapDay", 2);
+    leapDay.setBirthday(LocalDate.of(2000, 2, 29));
+    persistUser("noBirthday", 3);
+    entityManager.flush();
+
+    // when
+    List<UserSummary> found = userRepository.findSummariesByBirthdayBetween(228, 305);
+
+    // then -> in calendar order
+    assertEquals(2, found.size());
+    assertEquals(leapDay.getId(), found.get(0).getId());
+    assertEquals(march.getId(), found.get(1).getId());
+    assertEquals(LocalDate.of(1990, 3, 5), found.get(1).getBirthday());
+  }
+
+  @Test
+  public void lookupQueries_useIndexesFromMigrations() {
+    // given
+    for (int i = 0; i < 10; i++) {
+      persistUser("user" + i, i);
+    }
+    entityManager.flush();
+
+    // then -> H2 resolves every lookup through an index instead of scanning the table
+    String byName = explain("SELECT ID FROM USER WHERE NAME = 'user1'");
+    assertTrue(byName.contains("IDX_USER_NAME"), byName);
+
+    String byUsername = explain("SELECT ID FROM USER WHERE USERNAME = 'user1'");
+    assertFalse(byUsername.contains("tableScan"), byUsername);
+
+    String byToken = explain("SELECT ID FROM USER WHERE TOKEN = X'00000000000000000000000000000001'");
+    assertFalse(byToken.contains("tableScan"), byToken);
+
+    String byTokenAndStatus = explain("SELECT ID FROM USER WHERE TOKEN = X'00000000000000000000000000000001' AND STATUS = 0");
+    assertFalse(byTokenAndStatus.contains("tableScan"), byTokenAndStatus);
+
+    String byCreationDate = explain("SELECT ID FROM USER WHERE CREATION_DATE >= TIMESTAMP '2025-01-01 00:00:00'");
+    assertTrue(byCreationDate.contains("IDX_USER_CREATION_DATE"), byCreationDate);
+
+    String byBirthday = explain("SELECT ID FROM USER WHERE BIRTHDAY_MONTH_DAY BETWEEN 301 AND 307");
+    assertTrue(byBirthday.contains("IDX_USER_BIRTHDAY_MONTH_DAY"), byBirthday);
+  }
+
+  private String explain(String query) {
+    return String.valueOf(entityManager.getEntityManager().createNativeQuery("EXPLAIN " + query).getSingleResult());
+  }
+
+  // a valid token made of the number n, see TokenConverter
+  private static String token(long n) {
+    return TokenConverter.encode(ByteBuffer.allocate(TokenConverter.TOKEN_BYTES).putLong(8, n).array());
+  }
+
+  private User persistUser(String username, long token) {
+    User user = new User();
+    user.setName(username);
+    user.setUsername(username);
+    user.setPassword("password");
+    user.setCreationDate(Instant.parse("2025-03-03T10:00:00Z"));
+    user.setStatus(UserStatus.OFFLINE);
+    user.setToken(token(token));
+    return entityManager.persist(user);
+  }
 }
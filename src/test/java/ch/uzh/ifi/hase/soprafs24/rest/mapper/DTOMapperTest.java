@@ -2,10 +2,14 @@ package ch.uzh.ifi.hase.soprafs24.rest.mapper;
 
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+import java.time.LocalDate;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -39,8 +43,8 @@ public class DTOMapperTest {
     user.setName("firstname lastname");
     user.setUsername("firstname@lastname");
     user.setPassword("password");
-    user.setCreationDate("03.03.2025");
-    user.setBirthday("01.01.2000");
+    user.setCreationDate(Instant.parse("2025-03-03T10:00:00Z"));
+    user.setBirthday(LocalDate.of(2000, 1, 1));
     user.setToken("1");
     user.setStatus(UserStatus.OFFLINE);
 
@@ -51,8 +55,24 @@ public class DTOMapperTest {
     // check content
     assertEquals(user.getId(), userGetDTO.getId());
     assertEquals(user.getUsername(), userGetDTO.getUsername());
-    assertEquals(user.getCreationDate(), userGetDTO.getCreationDate());
+    assertEquals(DateFormats.formatCreationDate(user.getCreationDate()), userGetDTO.getCreationDate());
     assertEquals(user.getStatus(), userGetDTO.getStatus());
-    assertEquals(user.getBirthday(), userGetDTO.getBirthday());
+    assertEquals("01.01.2000", userGetDTO.getBirthday());
+  }
+
+  @Test
+  public void testGetUser_fromUserSummary_toUserGetDTO_success() {
+    // create UserSummary
+    UserSummary userSummary = new UserSummary(1L, "firstname@lastname", Instant.parse("2025-03-03T10:00:00Z"), LocalDate.of(2000, 1, 1), UserStatus.ONLINE, 1L);
+
+    // MAP -> Create UserGetDTO
+    UserGetDTO userGetDTO = DTOMapper.INSTANCE.convertSummaryToUserGetDTO(userSummary);
+
+    // check content
+    assertEquals(userSummary.getId(), userGetDTO.getId());
+    assertEquals(userSummary.getUsername(), userGetDTO.getUsername());
+    assertEquals(DateFormats.formatCreationDate(userSummary.getCreationDate()), userGetDTO.getCreationDate());
+    assertEquals(userSummary.getStatus(), userGetDTO.getStatus());
+    assertEquals("01.01.2000", userGetDTO.getBirthday());
   }
 }
@@ -0,0 +1,151 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OnlineUsersTest
+ * Tests the in-memory online set, count and summaries without any Spring
+ * context or database.
+ */
+public class OnlineUsersTest {
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  public void setOnlineAndOffline_countedOncePerUser() {
+    OnlineUsers onlineUsers = new OnlineUsers(meterRegistry);
+    onlineUsers.markLoaded();
+
+    onlineUsers.setOnline(2L);
+    onlineUsers.setOnline(1L);
+    onlineUsers.setOnline(1L);
+    onlineUsers.setOffline(3L);
+
+    assertEquals(2, onlineUsers.count());
+    assertEquals(Arrays.asList(1L, 2L), onlineUsers.ids());
+    assertEquals(2, meterRegistry.get("users.online").gauge().value());
+
+    onlineUsers.setOffline(1L);
+    onlineUsers.setOffline(1L);
+
+    assertEquals(1, onlineUsers.count());
+    assertFalse(onlineUsers.isOnline(1L));
+    assertTrue(onlineUsers.isOnline(2L));
+  }
+
+  @Test
+  public void load_changesMadeWhileLoadingWin() {
+    OnlineUsers onlineUsers = new OnlineUsers(meterRegistry);
+    // logged out and in again before the loader read them
+    onlineUsers.setOffline(1L);
+    onlineUsers.setOnline(2L);
+
+    onlineUsers.load(summary(1L));
+    onlineUsers.load(summary(2L));
+    onlineUsers.load(summary(3L));
+    onlineUsers.markLoaded();
+
+    assertEquals(Arrays.asList(2L, 3L), onlineUsers.ids());
+    assertEquals(2, onlineUsers.count());
+  }
+
+  @Test
+  public void users_onlyChangedUsersRead() {
+    OnlineUsers onlineUsers = new OnlineUsers(meterRegistry);
+    onlineUsers.load(summary(1L));
+    onlineUsers.load(summary(2L));
+    onlineUsers.markLoaded();
+    onlineUsers.setOnline(3L);
+    onlineUsers.changed(1L);
+    List<Collection<Long>> reads = new ArrayList<>();
+
+    List<UserSummary> users = onlineUsers.users(ids -> {
+      reads.add(new ArrayList<>(ids));
+      Map<Long, UserSummary> read = new HashMap<>();
+      ids.forEach(id -> read.put(id, summary(id)));
+      return read;
+    });
+
+    assertEquals(Arrays.asList(1L, 2L, 3L), users.stream().map(UserSummary::getId).collect(Collectors.toList()));
+    assertEquals(Collections.singletonList(Arrays.asList(1L, 3L)), reads);
+    assertEquals(UserStatus.ONLINE, users.get(2).getStatus());
+
+    onlineUsers.users(ids -> {
+      reads.add(ids);
+      return Collections.emptyMap();
+    });
+    assertEquals(1, reads.size());
+  }
+
+  @Test
+  public void users_changedWhileRead_readAgain() {
+    OnlineUsers onlineUsers = new OnlineUsers(meterRegistry);
+    onlineUsers.markLoaded();
+    onlineUsers.setOnline(1L);
+
+    // the user renames itself after its old summary was read
+    onlineUsers.users(ids -> {
+      onlineUsers.changed(1L);
+      return Collections.singletonMap(1L, summary(1L));
+    });
+    List<Long> reads = new ArrayList<>();
+    onlineUsers.users(ids -> {
+      reads.addAll(ids);
+      return Collections.singletonMap(1L, summary(1L));
+    });
+
+    assertEquals(Collections.singletonList(1L), reads);
+  }
+
+  @Test
+  public void concurrentLoginsAndLogouts_countMatchesSet() throws Exception {
+    OnlineUsers onlineUsers = new OnlineUsers(meterRegistry);
+    onlineUsers.markLoaded();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> storm = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        storm.add(executor.submit(() -> {
+          // every thread flips the same 1000 users, ending with the even ones online
+          for (long id = 0; id < 1000; id++) {
+            onlineUsers.setOnline(id);
+            if (id % 2 == 1) {
+              onlineUsers.setOffline(id);
+            }
+          }
+        }));
+      }
+      for (Future<?> result : storm) {
+        result.get();
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    assertEquals(onlineUsers.ids().size(), onlineUsers.count());
+  }
+
+  private static UserSummary summary(long id) {
+    return new UserSummary(id, "username" + id, Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+  }
+}
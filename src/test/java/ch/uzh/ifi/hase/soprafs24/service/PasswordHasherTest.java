@@ -0,0 +1,83 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PasswordHasherTest
+ * Tests hashing, verification and rehash detection with a low iteration count.
+ */
+public class PasswordHasherTest {
+
+  private final PasswordHasher hasher = new PasswordHasher("PBKDF2WithHmacSHA256", 1000, 1, 10, Duration.ofSeconds(5));
+
+  @AfterEach
+  public void stop() {
+    hasher.stop();
+  }
+
+  @Test
+  public void hash_matchesOnlyOriginalPassword() {
+    String hash = hasher.hash("password");
+
+    assertNotEquals("password", hash);
+    assertTrue(hasher.matches("password", hash));
+    assertFalse(hasher.matches("Password", hash));
+    assertFalse(hasher.matches(null, hash));
+  }
+
+  @Test
+  public void hash_saltedPerCall() {
+    assertNotEquals(hasher.hash("password"), hasher.hash("password"));
+  }
+
+  @Test
+  public void hashAll_keepsOrder() {
+    PasswordHasher pooled = new PasswordHasher("PBKDF2WithHmacSHA256", 1000, 2, 1, Duration.ofSeconds(5));
+    try {
+      // more passwords than the queue holds, never rejected
+      List<String> hashes = pooled.hashAll(Arrays.asList("a", "b", "c", "d", "e"));
+
+      assertEquals(5, hashes.size());
+      assertTrue(pooled.matches("a", hashes.get(0)));
+      assertTrue(pooled.matches("e", hashes.get(4)));
+      assertFalse(pooled.matches("a", hashes.get(1)));
+    }
+    finally {
+      pooled.stop();
+    }
+  }
+
+  @Test
+  public void matches_unknownUser_neverMatches() {
+    assertFalse(hasher.matches("dummy password", null));
+  }
+
+  @Test
+  public void needsRehash_changedParameters() {
+    String hash = hasher.hash("password");
+    PasswordHasher stronger = new PasswordHasher("PBKDF2WithHmacSHA256", 2000, 1, 10, Duration.ofSeconds(5));
+    try {
+      assertFalse(hasher.needsRehash(hash));
+      assertTrue(stronger.needsRehash(hash));
+      // hashes made with the old parameters are still accepted
+      assertTrue(stronger.matches("password", hash));
+    }
+    finally {
+      stronger.stop();
+    }
+  }
+
+  @Test
+  public void plaintextPassword_matchesAndNeedsRehash() {
+    assertTrue(hasher.matches("password", "password"));
+    assertFalse(hasher.matches("password", "other"));
+    assertTrue(hasher.needsRehash("password"));
+  }
+}
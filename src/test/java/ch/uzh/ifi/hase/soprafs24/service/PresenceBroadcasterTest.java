@@ -0,0 +1,74 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.PresenceEventDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PresenceBroadcasterTest
+ * Tests the fan-out of presence events and the disconnect of slow subscribers.
+ */
+public class PresenceBroadcasterTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final PresenceBroadcaster broadcaster = new PresenceBroadcaster(4, Duration.ofHours(1), meterRegistry);
+
+  @Test
+  public void publish_deliveredToEverySubscriber() throws Exception {
+    CompletableFuture<List<ServerSentEvent<PresenceEventDTO>>> first = broadcaster.subscribe().take(2).collectList().toFuture();
+    CompletableFuture<List<ServerSentEvent<PresenceEventDTO>>> second = broadcaster.subscribe().take(2).collectList().toFuture();
+    assertEquals(2, broadcaster.getSubscriberCount());
+
+    broadcaster.publish(1L, UserStatus.ONLINE);
+    broadcaster.publish(2L, UserStatus.OFFLINE);
+
+    for (CompletableFuture<List<ServerSentEvent<PresenceEventDTO>>> events : List.of(first, second)) {
+      List<ServerSentEvent<PresenceEventDTO>> received = events.get(5, TimeUnit.SECONDS);
+      assertEquals("presence", received.get(0).event());
+      assertEquals(1L, received.get(0).data().getId());
+      assertEquals(UserStatus.ONLINE, received.get(0).data().getStatus());
+      assertEquals(2L, received.get(1).data().getId());
+      assertEquals(UserStatus.OFFLINE, received.get(1).data().getStatus());
+    }
+    assertEquals(0, broadcaster.getSubscriberCount());
+  }
+
+  @Test
+  public void slowSubscriber_disconnectedWithoutAffectingOthers() throws Exception {
+    AtomicReference<Throwable> slowError = new AtomicReference<>();
+    // never requests anything, so its buffer fills up
+    broadcaster.subscribe().subscribe(new BaseSubscriber<ServerSentEvent<PresenceEventDTO>>() {
+      @Override
+      protected void hookOnSubscribe(Subscription subscription) {
+      }
+
+      @Override
+      protected void hookOnError(Throwable throwable) {
+        slowError.set(throwable);
+      }
+    });
+    CompletableFuture<List<ServerSentEvent<PresenceEventDTO>>> fast = broadcaster.subscribe().take(10).collectList().toFuture();
+
+    for (long id = 0; id < 10; id++) {
+      broadcaster.publish(id, UserStatus.ONLINE);
+    }
+
+    assertEquals(10, fast.get(5, TimeUnit.SECONDS).size());
+    assertNotNull(slowError.get());
+    assertEquals(1, meterRegistry.get("users.presence.dropped").counter().count());
+    assertEquals(0, broadcaster.getSubscriberCount());
+  }
+}
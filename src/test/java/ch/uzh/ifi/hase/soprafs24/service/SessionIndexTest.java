@@ -0,0 +1,126 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SessionIndexTest
+ * Tests the token index used by the authentication check without any Spring
+ * context or database.
+ */
+public class SessionIndexTest {
+
+  @Test
+  public void lookup_countsHitsAndMisses() {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    SessionIndex sessionIndex = new SessionIndex(Duration.ofHours(1), Duration.ofMinutes(30), Duration.ofSeconds(1), meterRegistry);
+    sessionIndex.put("token", 1L);
+
+    assertNotNull(sessionIndex.lookup("token"));
+    assertNull(sessionIndex.lookup("unknown"));
+
+    assertEquals(1, sessionIndex.getHits());
+    assertEquals(1, sessionIndex.getMisses());
+    assertEquals(1, meterRegistry.get("users.session.lookups").tag("result", "hit").functionCounter().count());
+    assertEquals(1, meterRegistry.get("users.session.lookups").tag("result", "miss").functionCounter().count());
+  }
+
+  @Test
+  public void lookup_expiredSession_refusedUntilSwept() {
+    SessionIndex sessionIndex = new SessionIndex(Duration.ZERO, Duration.ofMinutes(30), Duration.ofMillis(1), new SimpleMeterRegistry());
+    sessionIndex.put("token", 1L);
+
+    assertNull(sessionIndex.lookup("token"));
+    // not loaded again from the database, where the user is still ONLINE
+    assertFalse(sessionIndex.getOrLoad("token", token -> Optional.of(sessionIndex.newSession(1L))).isPresent());
+
+    List<Map.Entry<String, SessionIndex.Session>> expired = sessionIndex.pollExpired(System.currentTimeMillis() + 1);
+    assertEquals(1, expired.size());
+    assertEquals(1L, expired.get(0).getValue().getUserId());
+    assertTrue(sessionIndex.removeExpired("token", expired.get(0).getValue()));
+    assertEquals(0, sessionIndex.size());
+  }
+
+  @Test
+  public void pollExpired_idleTimeoutBeforeTtl() {
+    SessionIndex sessionIndex = new SessionIndex(Duration.ofHours(1), Duration.ofMinutes(30), Duration.ofSeconds(1), new SimpleMeterRegistry());
+    long now = System.currentTimeMillis();
+    sessionIndex.put("token", 1L);
+
+    // several rotations of the wheel pass before the deadline, the session is kept for its own
+    assertTrue(sessionIndex.pollExpired(now + Duration.ofMinutes(29).toMillis()).isEmpty());
+    assertEquals(1, sessionIndex.pollExpired(now + Duration.ofMinutes(31).toMillis()).size());
+  }
+
+  @Test
+  public void pollExpired_loggedOutOrReplaced_notReturned() {
+    SessionIndex sessionIndex = new SessionIndex(Duration.ofHours(1), Duration.ofMinutes(30), Duration.ofSeconds(1), new SimpleMeterRegistry());
+    sessionIndex.put("loggedOut", 1L);
+    sessionIndex.evict("loggedOut");
+    sessionIndex.put("loggedInTwice", 2L);
+    sessionIndex.put("loggedInTwice", 2L);
+
+    List<Map.Entry<String, SessionIndex.Session>> expired =
+        sessionIndex.pollExpired(System.currentTimeMillis() + Duration.ofHours(2).toMillis());
+
+    // only the current session of the second token
+    assertEquals(1, expired.size());
+    assertEquals("loggedInTwice", expired.get(0).getKey());
+  }
+
+  @Test
+  public void getOrLoad_evictedWhileLoading_notIndexed() {
+    SessionIndex sessionIndex = new SessionIndex(Duration.ofHours(1), Duration.ofMinutes(30), Duration.ofSeconds(1), new SimpleMeterRegistry());
+
+    // the user logs out while the database lookup is still in flight
+    Optional<SessionIndex.Session> loaded = sessionIndex.getOrLoad("token", token -> {
+      sessionIndex.evict(token);
+      return Optional.of(sessionIndex.newSession(1L));
+    });
+
+    assertTrue(loaded.isPresent());
+    assertEquals(0, sessionIndex.size());
+  }
+
+  @Test
+  public void concurrentLoginsAndLogouts_leaveOnlyLoggedInTokens() throws Exception {
+    SessionIndex sessionIndex = new SessionIndex(Duration.ofHours(1), Duration.ofMinutes(30), Duration.ofSeconds(1), new SimpleMeterRegistry());
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int i = 0; i < 1000; i++) {
+      String token = "token" + i;
+      long userId = i;
+      boolean staysOnline = i % 2 == 0;
+      futures.add(executor.submit(() -> {
+        for (int round = 0; round < 100; round++) {
+          sessionIndex.put(token, userId);
+          sessionIndex.evict(token);
+        }
+        if (staysOnline) {
+          sessionIndex.put(token, userId);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(500, sessionIndex.size());
+    assertNotNull(sessionIndex.lookup("token0"));
+    assertNull(sessionIndex.lookup("token1"));
+  }
+}
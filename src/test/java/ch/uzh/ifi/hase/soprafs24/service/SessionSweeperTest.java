@@ -0,0 +1,68 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SessionSweeperTest
+ * Tests the sweeper against a real SessionIndex whose sessions expire
+ * immediately and a mocked UserService. The sweep schedule is not started,
+ * sweeps are triggered by the tests.
+ */
+public class SessionSweeperTest {
+
+  @Mock
+  private UserService userService;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private SessionIndex sessionIndex;
+
+  private SessionSweeper sweeper;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    sessionIndex = new SessionIndex(Duration.ZERO, Duration.ofMinutes(30), Duration.ofMillis(1), new SimpleMeterRegistry());
+    sweeper = new SessionSweeper(sessionIndex, userService, Duration.ofHours(1), 100, meterRegistry);
+  }
+
+  @Test
+  public void sweep_expiredSessionsHandedOverInOneCall() throws InterruptedException {
+    sessionIndex.put("token1", 1L);
+    sessionIndex.put("token2", 2L);
+    Mockito.when(userService.expireSessions(Mockito.any(), Mockito.eq(100))).thenReturn(2);
+    Thread.sleep(2); // let the wheel tick past the deadlines
+
+    assertEquals(2, sweeper.sweep());
+
+    Mockito.verify(userService).expireSessions(Mockito.argThat(expired -> expired.size() == 2), Mockito.eq(100));
+    assertEquals(2, meterRegistry.get("users.session.swept").counter().count());
+    // nothing due any more
+    assertEquals(0, sweeper.sweep());
+  }
+
+  @Test
+  public void sweep_failedWrite_retriedNextTime() throws InterruptedException {
+    sessionIndex.put("token", 1L);
+    Mockito.when(userService.expireSessions(Mockito.any(), Mockito.anyInt()))
+        .thenThrow(new IllegalStateException("database unavailable"))
+        .thenReturn(1);
+    Thread.sleep(2);
+
+    assertThrows(IllegalStateException.class, () -> sweeper.sweep());
+    Thread.sleep(2);
+
+    assertEquals(1, sweeper.sweep());
+    Mockito.verify(userService, Mockito.times(2)).expireSessions(Mockito.argThat(expired -> expired.size() == 1), Mockito.eq(100));
+  }
+}
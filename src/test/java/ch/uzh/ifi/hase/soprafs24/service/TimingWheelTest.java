@@ -0,0 +1,63 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TimingWheelTest
+ * Tests the timing wheel behind session expiry with explicit clock values.
+ */
+public class TimingWheelTest {
+
+  @Test
+  public void advance_returnsItemsOnceTheirDeadlinePassed() {
+    TimingWheel<String> wheel = new TimingWheel<>(Duration.ofMillis(10), 8, 0);
+    wheel.schedule("a", 25);
+    wheel.schedule("b", 40);
+
+    assertEquals(Collections.emptyList(), wheel.advance(20));
+    assertEquals(Collections.singletonList("a"), wheel.advance(30));
+    assertEquals(Collections.emptyList(), wheel.advance(35));
+    assertEquals(Collections.singletonList("b"), wheel.advance(40));
+    assertEquals(Collections.emptyList(), wheel.advance(100));
+  }
+
+  @Test
+  public void advance_deadlinesRotationsAheadKeptForTheirRound() {
+    // 8 slots of 10 ms, one rotation is 80 ms
+    TimingWheel<String> wheel = new TimingWheel<>(Duration.ofMillis(10), 8, 0);
+    wheel.schedule("nextRound", 110);
+    wheel.schedule("thisRound", 30);
+
+    assertEquals(Collections.singletonList("thisRound"), wheel.advance(100));
+    assertEquals(Collections.singletonList("nextRound"), wheel.advance(110));
+  }
+
+  @Test
+  public void schedule_pastDeadline_dueOnNextTick() {
+    TimingWheel<String> wheel = new TimingWheel<>(Duration.ofMillis(10), 8, 0);
+    wheel.advance(50);
+
+    wheel.schedule("late", 0);
+
+    assertEquals(Collections.singletonList("late"), wheel.advance(60));
+  }
+
+  @Test
+  public void advance_afterLongPause_everythingDueReturned() {
+    TimingWheel<String> wheel = new TimingWheel<>(Duration.ofMillis(10), 8, 0);
+    wheel.schedule("a", 15);
+    wheel.schedule("b", 75);
+    wheel.schedule("c", 500);
+    wheel.schedule("d", 2000);
+
+    assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), new HashSet<>(wheel.advance(1000)));
+    assertEquals(Collections.singletonList("d"), wheel.advance(2000));
+  }
+}
@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.TokenConverter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenGeneratorTest
+ * Tests the generated tokens and their conversion between the string form
+ * of the API and the 16 bytes stored.
+ */
+public class TokenGeneratorTest {
+
+  private final TokenGenerator tokenGenerator = new TokenGenerator();
+
+  @Test
+  public void newToken_16BytesAsUrlSafeString() {
+    String token = tokenGenerator.newToken();
+
+    assertEquals(22, token.length());
+    assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    byte[] bytes = TokenConverter.decode(token);
+    assertEquals(16, bytes.length);
+    assertEquals(token, TokenConverter.encode(bytes));
+  }
+
+  @Test
+  public void newToken_unique() {
+    Set<String> tokens = new HashSet<>();
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(tokens.add(tokenGenerator.newToken()));
+    }
+  }
+
+  @Test
+  public void decode_uuidToken_sameBytes() {
+    UUID uuid = UUID.randomUUID();
+    byte[] expected = ByteBuffer.allocate(16)
+        .putLong(uuid.getMostSignificantBits())
+        .putLong(uuid.getLeastSignificantBits())
+        .array();
+
+    // tokens issued before the binary storage still resolve
+    assertArrayEquals(expected, TokenConverter.decode(uuid.toString()));
+  }
+
+  @Test
+  public void decode_noToken_null() {
+    assertNull(TokenConverter.decode(null));
+    assertNull(TokenConverter.decode("1"));
+    assertNull(TokenConverter.decode("not+a/token!!!!!!!!!!!"));
+  }
+}
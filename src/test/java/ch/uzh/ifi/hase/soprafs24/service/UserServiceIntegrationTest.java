@@ -3,6 +3,10 @@ package ch.uzh.ifi.hase.soprafs24.service;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.EditPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LogoutPutDTO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +16,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.test.context.web.WebAppConfiguration; // tests run in web app environment
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -20,7 +33,7 @@ import static org.junit.jupiter.api.Assertions.*;
  * @see UserService
  */
 @WebAppConfiguration // test runs in web app environment
-@SpringBootTest
+@SpringBootTest(properties = "users.password.iterations=1000") // cheap hashes, the storm logs in over a thousand times
 public class UserServiceIntegrationTest {
 
   @Qualifier("userRepository") //userRepositorx is injected
@@ -82,4 +95,165 @@ public class UserServiceIntegrationTest {
     assertEquals(HttpStatus.CONFLICT, exception.getStatus());
 
   }
+
+  @Test
+  public void loginReadLogout_readsSeeCommittedStatus() {
+    User testUser = new User();
+    testUser.setName("testName");
+    testUser.setUsername("testUsername");
+    testUser.setPassword("testPassword");
+    User createdUser = userService.createUser(testUser);
+    // only the hash is stored
+    assertNotEquals("testPassword", userRepository.findByUsername("testUsername").getPassword());
+
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("testName");
+    loginPostDTO.setPassword("testPassword");
+    String token = userService.logInUser(loginPostDTO).getToken();
+
+    // the read-only paths see the status written by the login transaction
+    assertTrue(userService.authenticateUser(token));
+    UserSummary me = userService.getUserByToken(token);
+    assertEquals(createdUser.getId(), me.getId());
+    assertEquals(UserStatus.ONLINE, userService.getUserById(createdUser.getId()).getStatus());
+
+    LogoutPutDTO logoutPutDTO = new LogoutPutDTO();
+    logoutPutDTO.setToken(token);
+    userService.logOutUser(logoutPutDTO);
+
+    assertEquals(UserStatus.OFFLINE, userService.getUserById(createdUser.getId()).getStatus());
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.authenticateUser(token));
+    assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+  }
+
+  @Test
+  public void update_changesProfileInPlace() {
+    User testUser = new User();
+    testUser.setName("testName");
+    testUser.setUsername("testUsername");
+    testUser.setPassword("testPassword");
+    User createdUser = userService.createUser(testUser);
+
+    EditPutDTO editPutDTO = new EditPutDTO();
+    editPutDTO.setUsername("newUsername");
+    editPutDTO.setBirthday("01.01.2000");
+    userService.update(createdUser.getId(), editPutDTO);
+
+    // a missing birthday keeps the stored one
+    EditPutDTO usernameOnly = new EditPutDTO();
+    usernameOnly.setUsername("newerUsername");
+    userService.update(createdUser.getId(), usernameOnly);
+
+    UserSummary updated = userService.getUserById(createdUser.getId());
+    assertEquals("newerUsername", updated.getUsername());
+    assertEquals(LocalDate.of(2000, 1, 1), updated.getBirthday());
+  }
+
+  @Test
+  public void update_newVersionVisibleInDelta() {
+    User first = new User();
+    first.setName("firstName");
+    first.setUsername("firstUsername");
+    first.setPassword("testPassword");
+    first = userService.createUser(first);
+    User second = new User();
+    second.setName("secondName");
+    second.setUsername("secondUsername");
+    second.setPassword("testPassword");
+    second = userService.createUser(second);
+    // versions are assigned by the database on insert
+    assertNotNull(first.getVersion());
+    assertTrue(second.getVersion() > first.getVersion());
+
+    String listVersion = userService.getUsersVersion();
+    long seen = second.getVersion();
+    assertTrue(userService.getUsersChangedSince(seen).isEmpty());
+
+    EditPutDTO editPutDTO = new EditPutDTO();
+    editPutDTO.setUsername("renamed");
+    userService.update(first.getId(), editPutDTO);
+
+    // only the changed user, with a version above everything seen before
+    List<UserSummary> delta = userService.getUsersChangedSince(seen);
+    assertEquals(1, delta.size());
+    assertEquals("renamed", delta.get(0).getUsername());
+    assertTrue(delta.get(0).getVersion() > seen);
+    assertNotEquals(listVersion, userService.getUsersVersion());
+  }
+
+  @Test
+  public void createUsers_batchInserted() {
+    User existing = new User();
+    existing.setName("existingName");
+    existing.setUsername("imported7");
+    existing.setPassword("testPassword");
+    userService.createUser(existing);
+
+    // more users than one block of ids
+    List<User> imported = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      User user = new User();
+      user.setName("importedName" + i);
+      user.setUsername("imported" + i);
+      user.setPassword("testPassword");
+      imported.add(user);
+    }
+
+    Map<Integer, String> failures = userService.createUsers(imported);
+
+    assertEquals(Collections.singleton(7), failures.keySet());
+    assertEquals(120, userRepository.count());
+    User stored = userRepository.findByUsername("imported119");
+    assertEquals(imported.get(119).getId(), stored.getId());
+    assertNotNull(stored.getVersion());
+    assertEquals(120, userRepository.findAll().stream().map(User::getId).distinct().count());
+  }
+
+  @Test
+  public void concurrentLoginStorm_allStatusChangesApplied() throws Exception {
+    int users = 20;
+    int rounds = 50;
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < users; i++) {
+      User testUser = new User();
+      testUser.setName("name" + i);
+      testUser.setUsername("username" + i);
+      testUser.setPassword("password");
+      userService.createUser(testUser);
+      names.add("name" + i);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<String>> futures = new ArrayList<>();
+    for (String name : names) {
+      futures.add(executor.submit(() -> {
+        LoginPostDTO loginPostDTO = new LoginPostDTO();
+        loginPostDTO.setUsername(name);
+        loginPostDTO.setPassword("password");
+        LogoutPutDTO logoutPutDTO = new LogoutPutDTO();
+        String token = null;
+        for (int round = 0; round < rounds; round++) {
+          token = userService.logInUser(loginPostDTO).getToken();
+          logoutPutDTO.setToken(token);
+          userService.logOutUser(logoutPutDTO);
+        }
+        // every user ends the storm logged in
+        return userService.logInUser(loginPostDTO).getToken();
+      }));
+    }
+    List<String> tokens = new ArrayList<>();
+    for (Future<String> future : futures) {
+      tokens.add(future.get());
+    }
+    executor.shutdown();
+
+    // the storm only changes rows, it never adds or duplicates one
+    assertEquals(users, userRepository.count());
+    assertEquals(users, tokens.stream().distinct().count());
+    for (String token : tokens) {
+      assertTrue(userService.authenticateUser(token));
+      assertEquals(UserStatus.ONLINE, userRepository.findByToken(token).getStatus());
+    }
+    assertTrue(userRepository.findAll().stream().allMatch(user -> user.getStatus() == UserStatus.ONLINE));
+  }
 }
@@ -1,17 +1,38 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
 
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserCredentials;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs24.repository.UserToken;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.EditPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LoginPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LogoutPutDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks; //injects mocked UserRepository
 import org.mockito.Mock; //mocking the UserRepository so that it doesnt interact with real database
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class UserServiceTest {
@@ -19,6 +40,36 @@ public class UserServiceTest {
   @Mock // simulates behaviour of real userRepository but doesnt interact with real database
   private UserRepository userRepository;
 
+  @Spy // real cache so lookups through it can be verified against the repository
+  private UserCache userCache = new UserCache(100);
+
+  @Spy // real session index so authentication can be checked without the database
+  private SessionIndex sessionIndex = new SessionIndex(Duration.ofHours(1), Duration.ofMinutes(30), Duration.ofSeconds(1), new SimpleMeterRegistry());
+
+  @Mock
+  private UserStatusWriter userStatusWriter;
+
+  @Spy // real hashing with a low cost so the tests stay fast
+  private PasswordHasher passwordHasher = new PasswordHasher("PBKDF2WithHmacSHA256", 1000, 1, 10, Duration.ofSeconds(5));
+
+  @Mock
+  private PresenceBroadcaster presenceBroadcaster;
+
+  @Spy
+  private TokenGenerator tokenGenerator = new TokenGenerator();
+
+  @Spy // real filter, not loaded unless a test loads it, so every username is checked against the repository
+  private UsernameFilter usernameFilter = new UsernameFilter(1000, 0.01, new SimpleMeterRegistry());
+
+  @Spy // real index, loaded by the tests that search
+  private UsernameIndex usernameIndex = new UsernameIndex(new SimpleMeterRegistry());
+
+  @Spy
+  private OnlineUsers onlineUsers = new OnlineUsers(new SimpleMeterRegistry());
+
+  @Spy // in-memory registry to read the counters back
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
   @InjectMocks
   private UserService userService;
 
@@ -85,4 +136,406 @@ public class UserServiceTest {
       assertEquals(HttpStatus.CONFLICT, exception.getStatus());
   }
 
+  @Test
+  public void createUser_usernameFilterRulesNameOut_skipsQuery() {
+    usernameFilter.markLoaded();
+
+    userService.createUser(testUser);
+
+    Mockito.verify(userRepository, Mockito.never()).findByUsername(Mockito.any());
+    assertTrue(usernameFilter.mightContain("testUsername"));
+  }
+
+  @Test
+  public void createUser_nameTakenBehindFilter_throwsConflict() {
+    // given -> the filter has not seen the name, but the unique constraint has
+    usernameFilter.markLoaded();
+    Mockito.when(userRepository.save(Mockito.any())).thenThrow(new DataIntegrityViolationException("duplicate username"));
+    Mockito.when(userRepository.findByUsername("testUsername")).thenReturn(testUser);
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+  }
+
+  @Test
+  public void loadIndexes_fillsFilterAndIndexes() {
+    UserSummary existing = new UserSummary(1L, "existing", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+    UserSummary online = new UserSummary(2L, "online", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 1L);
+    Mockito.when(userRepository.findSummariesAfter(Mockito.eq(Long.MIN_VALUE), Mockito.any()))
+        .thenReturn(Arrays.asList(existing, online));
+
+    userService.loadIndexes();
+
+    assertTrue(usernameFilter.isLoaded());
+    assertTrue(usernameFilter.mightContain("existing"));
+    assertEquals(Collections.singletonList(1L), usernameIndex.search("exi", null, 10));
+    assertEquals(Collections.singletonList(2L), onlineUsers.ids());
+    assertEquals(1, userService.countOnlineUsers());
+    // the summaries read at startup serve the online list
+    assertEquals(Collections.singletonList(online), userService.getOnlineUsers());
+    Mockito.verify(userRepository, Mockito.never()).findSummariesByIdIn(Mockito.any());
+  }
+
+  @Test
+  public void countOnlineUsers_beforeLoaded_throwsServiceUnavailable() {
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.countOnlineUsers());
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+  }
+
+  @Test
+  public void searchUsers_beforeIndexLoaded_throwsServiceUnavailable() {
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.searchUsers("test", null, 10));
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+  }
+
+  @Test
+  public void searchUsers_matchesServedFromCacheInIndexOrder() {
+    usernameIndex.markLoaded();
+    UserSummary anna = new UserSummary(1L, "anna", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 1L);
+    UserSummary anton = new UserSummary(2L, "anton", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 1L);
+    usernameIndex.put(2L, "anton", UserStatus.ONLINE);
+    usernameIndex.put(1L, "anna", UserStatus.ONLINE);
+    Mockito.when(userRepository.findSummariesByIdIn(Mockito.any())).thenReturn(Arrays.asList(anton, anna));
+
+    assertEquals(Arrays.asList(anna, anton), userService.searchUsers("an", UserStatus.ONLINE, 10));
+    // the second search finds both in the cache
+    assertEquals(Arrays.asList(anna, anton), userService.searchUsers("AN", null, 10));
+    Mockito.verify(userRepository, Mockito.times(1)).findSummariesByIdIn(Mockito.any());
+  }
+
+  @Test
+  public void logInUser_statusVisibleToSearch() {
+    usernameIndex.markLoaded();
+    usernameIndex.put(1L, "testUsername", UserStatus.OFFLINE);
+    String hash = passwordHasher.hash("testPassword");
+    Mockito.when(userRepository.findCredentialsByName("testUsername"))
+        .thenReturn(Optional.of(new UserCredentials(1L, hash, "token")));
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("testUsername");
+    loginPostDTO.setPassword("testPassword");
+
+    userService.logInUser(loginPostDTO);
+
+    assertEquals(Collections.singletonList(1L), usernameIndex.search("test", UserStatus.ONLINE, 10));
+  }
+
+  @Test
+  public void logInAndOut_onlineUsersFollow() {
+    onlineUsers.markLoaded();
+    String hash = passwordHasher.hash("testPassword");
+    Mockito.when(userRepository.findCredentialsByName("testUsername"))
+        .thenReturn(Optional.of(new UserCredentials(1L, hash, "token")));
+    UserSummary summary = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 1L);
+    Mockito.when(userRepository.findSummariesByIdIn(Mockito.any())).thenReturn(Collections.singletonList(summary));
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("testUsername");
+    loginPostDTO.setPassword("testPassword");
+
+    userService.logInUser(loginPostDTO);
+
+    assertEquals(1, userService.countOnlineUsers());
+    assertEquals(Collections.singletonList(summary), userService.getOnlineUsers());
+    assertEquals(Collections.singletonList(summary), userService.getOnlineUsers());
+    // read once after the login, then kept in memory
+    Mockito.verify(userRepository, Mockito.times(1)).findSummariesByIdIn(Mockito.any());
+
+    LogoutPutDTO logoutPutDTO = new LogoutPutDTO();
+    logoutPutDTO.setToken("token");
+    userService.logOutUser(logoutPutDTO);
+
+    assertEquals(0, userService.countOnlineUsers());
+    // no full scan, the online users are never read from the user table
+    Mockito.verify(userRepository, Mockito.never()).findAllSummaries();
+  }
+
+  @Test
+  public void restoreSessions_indexesTokensOfOnlineUsers() {
+    Mockito.when(userRepository.findTokensByStatus(UserStatus.ONLINE))
+        .thenReturn(Collections.singletonList(new UserToken(1L, "token")));
+
+    assertEquals(1, userService.restoreSessions());
+
+    assertTrue(userService.authenticateUser("token"));
+    Mockito.verify(userRepository, Mockito.never()).findSummaryByToken(Mockito.any());
+  }
+
+  @Test
+  public void expireSessions_setsUsersOfflineInOneUpdate() {
+    onlineUsers.markLoaded();
+    Mockito.when(userRepository.findCredentialsByName("testUsername"))
+        .thenReturn(Optional.of(new UserCredentials(1L, "testPassword", "token")));
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("testUsername");
+    loginPostDTO.setPassword("testPassword");
+    userService.logInUser(loginPostDTO);
+    SessionIndex.Session session = sessionIndex.lookup("token");
+
+    int swept = userService.expireSessions(Collections.singletonList(Map.entry("token", session)), 100);
+
+    assertEquals(1, swept);
+    Mockito.verify(userRepository).updateStatusByIdIn(Collections.singletonList(1L), UserStatus.OFFLINE);
+    Mockito.verify(presenceBroadcaster).publish(1L, UserStatus.OFFLINE);
+    assertEquals(0, userService.countOnlineUsers());
+    assertNull(sessionIndex.lookup("token"));
+  }
+
+  @Test
+  public void expireSessions_userLoggedInAgain_restoredOnline() {
+    onlineUsers.markLoaded();
+    Mockito.when(userRepository.findCredentialsByName("testUsername"))
+        .thenReturn(Optional.of(new UserCredentials(1L, "testPassword", "token")));
+    // the session that expired, replaced by a new login before the sweep wrote OFFLINE
+    SessionIndex.Session expired = sessionIndex.newSession(1L);
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("testUsername");
+    loginPostDTO.setPassword("testPassword");
+    userService.logInUser(loginPostDTO);
+    Mockito.clearInvocations(userStatusWriter, presenceBroadcaster);
+
+    int swept = userService.expireSessions(Collections.singletonList(Map.entry("token", expired)), 100);
+
+    assertEquals(0, swept);
+    Mockito.verify(userStatusWriter).write(1L, UserStatus.ONLINE);
+    Mockito.verify(presenceBroadcaster, Mockito.never()).publish(Mockito.anyLong(), Mockito.any());
+    assertEquals(1, userService.countOnlineUsers());
+    assertTrue(userService.authenticateUser("token"));
+  }
+
+  @Test
+  public void getUserById_secondLookup_servedFromCache() {
+    UserSummary summary = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+    Mockito.when(userRepository.findSummaryById(1L)).thenReturn(Optional.of(summary));
+
+    UserSummary first = userService.getUserById(1L);
+    UserSummary second = userService.getUserById(1L);
+
+    // only the first lookup hits the database, both see the same data
+    Mockito.verify(userRepository, Mockito.times(1)).findSummaryById(1L);
+    Mockito.verify(userRepository, Mockito.never()).findAll();
+    assertEquals(summary.getUsername(), first.getUsername());
+    assertEquals(summary.getUsername(), second.getUsername());
+  }
+
+  @Test
+  public void getUserById_unknownId_throwsNotFound() {
+    Mockito.when(userRepository.findSummaryById(Mockito.anyLong())).thenReturn(Optional.empty());
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.getUserById(99L));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+  }
+
+  @Test
+  public void getUserById_afterInvalidate_reloadsFromRepository() {
+    UserSummary summary = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+    Mockito.when(userRepository.findSummaryById(1L)).thenReturn(Optional.of(summary));
+
+    userService.getUserById(1L);
+    userCache.invalidate(1L);
+    userService.getUserById(1L);
+
+    Mockito.verify(userRepository, Mockito.times(2)).findSummaryById(1L);
+  }
+
+  @Test
+  public void authenticateUser_afterLogin_servedFromSessionIndex() {
+    Mockito.when(userRepository.findCredentialsByName("testUsername"))
+            .thenReturn(Optional.of(new UserCredentials(1L, "testPassword", "token")));
+
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("testUsername");
+    loginPostDTO.setPassword("testPassword");
+    userService.logInUser(loginPostDTO);
+
+    // a single targeted update, the entity is never loaded or saved
+    Mockito.verify(userStatusWriter).write(1L, UserStatus.ONLINE);
+    Mockito.verify(presenceBroadcaster).publish(1L, UserStatus.ONLINE);
+    Mockito.verify(userRepository, Mockito.never()).findByName(Mockito.any());
+    Mockito.verify(userRepository, Mockito.never()).save(Mockito.any());
+    assertTrue(userService.authenticateUser("token"));
+    Mockito.verify(userRepository, Mockito.never()).findByToken(Mockito.any());
+    Mockito.verify(userRepository, Mockito.never()).findSummaryByToken(Mockito.any());
+  }
+
+  @Test
+  public void logInUser_plaintextPassword_rehashed() {
+    Mockito.when(userRepository.findCredentialsByName("testUsername"))
+            .thenReturn(Optional.of(new UserCredentials(1L, "testPassword", "token")));
+
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("testUsername");
+    loginPostDTO.setPassword("testPassword");
+    userService.logInUser(loginPostDTO);
+
+    // the password stored before hashing was introduced is replaced by a hash of it
+    Mockito.verify(userRepository).updatePasswordById(Mockito.eq(1L),
+            Mockito.argThat(hash -> !hash.equals("testPassword") && passwordHasher.matches("testPassword", hash)));
+  }
+
+  @Test
+  public void logInUser_wrongPassword_throwsUnauthorized() {
+    Mockito.when(userRepository.findCredentialsByName("testUsername"))
+            .thenReturn(Optional.of(new UserCredentials(1L, passwordHasher.hash("testPassword"), "token")));
+
+    LoginPostDTO loginPostDTO = new LoginPostDTO();
+    loginPostDTO.setUsername("testUsername");
+    loginPostDTO.setPassword("wrongPassword");
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.logInUser(loginPostDTO));
+    assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+    Mockito.verifyNoInteractions(userStatusWriter);
+    Mockito.verify(userRepository, Mockito.never()).updatePasswordById(Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void authenticateUser_afterLogout_throwsUnauthorized() {
+    UserSummary online = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.ONLINE, 1L);
+    UserSummary offline = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L);
+    Mockito.when(userRepository.findSummaryByToken("token")).thenReturn(Optional.of(online), Optional.of(offline));
+    assertTrue(userService.authenticateUser("token"));
+
+    LogoutPutDTO logoutPutDTO = new LogoutPutDTO();
+    logoutPutDTO.setToken("token");
+    assertTrue(userService.logOutUser(logoutPutDTO));
+    Mockito.verify(userStatusWriter).write(1L, UserStatus.OFFLINE);
+    Mockito.verify(presenceBroadcaster).publish(1L, UserStatus.OFFLINE);
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.authenticateUser("token"));
+    assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+    assertEquals(1, meterRegistry.get("users.authentication").tag("result", "success").counter().count());
+    assertEquals(1, meterRegistry.get("users.authentication").tag("result", "failure").counter().count());
+  }
+
+  @Test
+  public void createUsers_invalidRows_reportedAndSkipped() {
+    User valid = newUser("valid");
+    User taken = newUser("taken");
+    User duplicate = newUser("valid");
+    User noPassword = newUser("noPassword");
+    noPassword.setPassword(null);
+    Mockito.when(userRepository.findExistingUsernames(Mockito.any())).thenReturn(Collections.singletonList("taken"));
+
+    Map<Integer, String> failures = userService.createUsers(Arrays.asList(valid, taken, duplicate, noPassword));
+
+    // one query for all usernames, one batch with the only valid user
+    assertEquals(Arrays.asList(1, 2, 3), List.copyOf(failures.keySet()));
+    Mockito.verify(userRepository).findExistingUsernames(Mockito.argThat(names -> names.size() == 2));
+    Mockito.verify(userRepository).insertAll(Collections.singletonList(valid));
+    assertEquals(UserStatus.OFFLINE, valid.getStatus());
+    assertNotNull(valid.getToken());
+    assertTrue(passwordHasher.matches("testPassword", valid.getPassword()));
+  }
+
+  @Test
+  public void createUsers_usernameTakenConcurrently_onlyThatUserFails() {
+    User first = newUser("first");
+    User raced = newUser("raced");
+    Mockito.doThrow(new DataIntegrityViolationException("duplicate username"))
+        .when(userRepository).insertAll(Mockito.argThat(users -> users.contains(raced)));
+
+    Map<Integer, String> failures = userService.createUsers(Arrays.asList(first, raced));
+
+    // the batch is retried user by user
+    assertEquals(Collections.singleton(1), failures.keySet());
+    Mockito.verify(userRepository).insertAll(Collections.singletonList(first));
+  }
+
+  @Test
+  public void createUsers_loadedFilter_queriesOnlyProbableNames() {
+    usernameFilter.put("taken");
+    usernameFilter.markLoaded();
+    Mockito.when(userRepository.findExistingUsernames(Mockito.any())).thenReturn(Collections.singletonList("taken"));
+
+    Map<Integer, String> failures = userService.createUsers(Arrays.asList(newUser("new"), newUser("taken")));
+
+    assertEquals(Collections.singleton(1), failures.keySet());
+    Mockito.verify(userRepository).findExistingUsernames(Collections.singletonList("taken"));
+    assertTrue(usernameFilter.mightContain("new"));
+  }
+
+  @Test
+  public void getUsersByIds_cachedAndChunked() {
+    // user 1 is cached, the other 299 ids are loaded in chunks
+    userCache.getOrLoad(1L, id -> Optional.of(new UserSummary(1L, "cached", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 1L)));
+    List<Long> ids = new ArrayList<>();
+    for (long id = 1; id <= 300; id++) {
+      ids.add(id);
+    }
+    Mockito.when(userRepository.findSummariesByIdIn(Mockito.any())).thenReturn(Collections.singletonList(
+        new UserSummary(2L, "loaded", Instant.parse("2025-03-03T10:00:00Z"), null, UserStatus.OFFLINE, 2L)));
+    Mockito.when(userStatusWriter.pendingStatus(2L)).thenReturn(UserStatus.ONLINE);
+
+    Map<Long, UserSummary> users = userService.getUsersByIds(ids);
+
+    assertEquals(2, users.size());
+    assertEquals("cached", users.get(1L).getUsername());
+    assertEquals(UserStatus.ONLINE, users.get(2L).getStatus());
+    Mockito.verify(userRepository, Mockito.times(3)).findSummariesByIdIn(Mockito.argThat(chunk -> chunk.size() <= 128));
+  }
+
+  @Test
+  public void getUsersWithBirthdayInWeekOf_weekAcrossNewYear_twoRanges() {
+    // Wednesday 31.12.2025, the week runs from Monday 29.12. to Sunday 04.01.
+    userService.getUsersWithBirthdayInWeekOf(LocalDate.of(2025, 12, 31));
+
+    Mockito.verify(userRepository).findSummariesByBirthdayBetween(1229, 1231);
+    Mockito.verify(userRepository).findSummariesByBirthdayBetween(101, 104);
+  }
+
+  @Test
+  public void getUsersWithBirthdayInWeekOf_oneRange() {
+    UserSummary birthdayChild = new UserSummary(1L, "testUsername", Instant.parse("2025-03-03T10:00:00Z"),
+        LocalDate.of(2000, 3, 5), UserStatus.OFFLINE, 1L);
+    Mockito.when(userRepository.findSummariesByBirthdayBetween(303, 309)).thenReturn(Collections.singletonList(birthdayChild));
+
+    assertEquals(Collections.singletonList(birthdayChild), userService.getUsersWithBirthdayInWeekOf(LocalDate.of(2025, 3, 9)));
+  }
+
+  @Test
+  public void getUsersCreatedBetween_emptyPeriod_throwsBadRequest() {
+    Instant now = Instant.now();
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.getUsersCreatedBetween(now, now));
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+  }
+
+  @Test
+  public void update_unreadableBirthday_throwsBadRequest() {
+    EditPutDTO editPutDTO = new EditPutDTO();
+    editPutDTO.setUsername("newUsername");
+    editPutDTO.setBirthday("first of May");
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.update(1L, editPutDTO));
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+    Mockito.verifyNoInteractions(userRepository);
+  }
+
+  @Test
+  public void logOutUser_unknownToken_throwsNotFound() {
+    LogoutPutDTO logoutPutDTO = new LogoutPutDTO();
+    logoutPutDTO.setToken("unknown");
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.logOutUser(logoutPutDTO));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+  }
+
+  @Test
+  public void update_unknownId_throwsNotFound() {
+    EditPutDTO editPutDTO = new EditPutDTO();
+    editPutDTO.setUsername("newUsername");
+
+    // no row updated -> the user does not exist
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.update(99L, editPutDTO));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+    Mockito.verify(userRepository).updateUsername(99L, "newUsername");
+  }
+
+  private static User newUser(String username) {
+    User user = new User();
+    user.setName("testName");
+    user.setUsername(username);
+    user.setPassword("testPassword");
+    return user;
+  }
 }
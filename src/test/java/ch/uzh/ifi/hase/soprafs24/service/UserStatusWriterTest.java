@@ -0,0 +1,89 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserStatusWriterTest
+ * Tests the write-behind buffer for status changes against a mocked
+ * UserRepository. The flush schedule is not started, flushes are triggered
+ * by the tests.
+ */
+public class UserStatusWriterTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  private UserStatusWriter writer;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    writer = new UserStatusWriter(userRepository, new UserCache(100), true, Duration.ofHours(1), 100);
+  }
+
+  @Test
+  public void write_writeBehind_bufferedUntilFlush() {
+    writer.write(1L, UserStatus.ONLINE);
+
+    // readers see the buffered change, the database has not been touched
+    assertEquals(UserStatus.ONLINE, writer.pendingStatus(1L));
+    Mockito.verifyNoInteractions(userRepository);
+
+    writer.flush();
+
+    Mockito.verify(userRepository).updateStatusByIdIn(Collections.singletonList(1L), UserStatus.ONLINE);
+    assertNull(writer.pendingStatus(1L));
+  }
+
+  @Test
+  public void write_repeatedFlips_coalesceToLatestStatus() {
+    writer.write(1L, UserStatus.ONLINE);
+    writer.write(1L, UserStatus.OFFLINE);
+    writer.write(1L, UserStatus.ONLINE);
+    writer.write(2L, UserStatus.OFFLINE);
+    writer.write(3L, UserStatus.OFFLINE);
+
+    writer.flush();
+
+    // one update per status, each user only once
+    Mockito.verify(userRepository).updateStatusByIdIn(Collections.singletonList(1L), UserStatus.ONLINE);
+    Mockito.verify(userRepository).updateStatusByIdIn(
+        Mockito.argThat(ids -> new HashSet<>(ids).equals(new HashSet<>(Arrays.asList(2L, 3L)))),
+        Mockito.eq(UserStatus.OFFLINE));
+    Mockito.verifyNoMoreInteractions(userRepository);
+    assertEquals(0, writer.pendingCount());
+  }
+
+  @Test
+  public void flush_failedWrite_keepsBuffer() {
+    Mockito.when(userRepository.updateStatusByIdIn(Mockito.any(), Mockito.any()))
+        .thenThrow(new IllegalStateException("database unavailable"));
+    writer.write(1L, UserStatus.ONLINE);
+
+    assertThrows(IllegalStateException.class, () -> writer.flush());
+    assertEquals(UserStatus.ONLINE, writer.pendingStatus(1L));
+  }
+
+  @Test
+  public void write_withoutWriteBehind_updatesImmediately() {
+    UserStatusWriter direct = new UserStatusWriter(userRepository, new UserCache(100), false, Duration.ofHours(1), 100);
+
+    direct.write(1L, UserStatus.ONLINE);
+
+    Mockito.verify(userRepository).updateStatusById(1L, UserStatus.ONLINE);
+    assertNull(direct.pendingStatus(1L));
+  }
+}
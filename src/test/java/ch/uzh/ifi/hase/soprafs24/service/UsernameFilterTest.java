@@ -0,0 +1,77 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UsernameFilterTest
+ * Tests the Bloom filter in front of the username uniqueness check without
+ * any Spring context or database.
+ */
+public class UsernameFilterTest {
+
+  private static final int NAMES = 10_000;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  public void mightContain_beforeLoad_alwaysTrue() {
+    UsernameFilter filter = new UsernameFilter(NAMES, 0.01, meterRegistry);
+
+    assertTrue(filter.mightContain("anyone"));
+    assertFalse(filter.isLoaded());
+  }
+
+  @Test
+  public void mightContain_everyPutNameFound() {
+    UsernameFilter filter = new UsernameFilter(NAMES, 0.01, meterRegistry);
+    for (int i = 0; i < NAMES; i++) {
+      filter.put("user" + i);
+    }
+    filter.markLoaded();
+
+    for (int i = 0; i < NAMES; i++) {
+      assertTrue(filter.mightContain("user" + i), "user" + i);
+    }
+  }
+
+  @Test
+  public void mightContain_falsePositivesNearConfiguredRate() {
+    UsernameFilter filter = new UsernameFilter(NAMES, 0.01, meterRegistry);
+    for (int i = 0; i < NAMES; i++) {
+      filter.put("user" + i);
+    }
+    filter.markLoaded();
+
+    int falsePositives = 0;
+    for (int i = 0; i < NAMES; i++) {
+      if (filter.mightContain("other" + i)) {
+        falsePositives++;
+      }
+    }
+
+    // 1% expected, with room for chance
+    assertTrue(falsePositives < NAMES * 0.02, falsePositives + " false positives");
+    assertEquals(0.01, filter.estimatedFalsePositiveRate(), 0.005);
+  }
+
+  @Test
+  public void metrics_reportSizeFillAndChecks() {
+    UsernameFilter filter = new UsernameFilter(NAMES, 0.01, meterRegistry);
+    filter.put("taken");
+    filter.markLoaded();
+
+    filter.mightContain("taken");
+    filter.recordFalsePositive();
+
+    // about 9.6 bits per name at 1%
+    assertEquals(12_000, meterRegistry.get("users.username-filter.size").gauge().value(), 100);
+    assertEquals(1, meterRegistry.get("users.username-filter.insertions").gauge().value());
+    assertEquals(0.01, meterRegistry.get("users.username-filter.false-positive-rate.expected").gauge().value());
+    assertEquals(1, meterRegistry.get("users.username-filter.checks").tag("result", "probable").counter().count());
+    assertEquals(1, meterRegistry.get("users.username-filter.false-positives").counter().count());
+  }
+}
@@ -0,0 +1,79 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UsernameIndexTest
+ * Tests the prefix search index without any Spring context or database.
+ */
+public class UsernameIndexTest {
+
+  private UsernameIndex index;
+
+  @BeforeEach
+  public void setup() {
+    index = new UsernameIndex(new SimpleMeterRegistry());
+    index.load(1L, "anna", UserStatus.OFFLINE);
+    index.load(2L, "Andreas", UserStatus.ONLINE);
+    index.load(3L, "anton", UserStatus.ONLINE);
+    index.load(4L, "bert", UserStatus.ONLINE);
+    index.markLoaded();
+  }
+
+  @Test
+  public void search_ignoresCaseInAlphabeticalOrder() {
+    assertEquals(Arrays.asList(2L, 1L, 3L), index.search("AN", null, 10));
+    assertEquals(Collections.singletonList(1L), index.search("ann", null, 10));
+    assertEquals(Collections.emptyList(), index.search("c", null, 10));
+  }
+
+  @Test
+  public void search_stopsAtLimit() {
+    assertEquals(Arrays.asList(2L, 1L), index.search("an", null, 2));
+  }
+
+  @Test
+  public void search_byStatus_followsStatusChanges() {
+    assertEquals(Arrays.asList(2L, 3L), index.search("an", UserStatus.ONLINE, 10));
+
+    index.updateStatus(1L, UserStatus.ONLINE);
+    index.updateStatus(3L, UserStatus.OFFLINE);
+
+    assertEquals(Arrays.asList(2L, 1L), index.search("an", UserStatus.ONLINE, 10));
+    assertEquals(Collections.singletonList(3L), index.search("an", UserStatus.OFFLINE, 10));
+  }
+
+  @Test
+  public void rename_oldUsernameNoLongerFound() {
+    index.rename(4L, "annabelle");
+
+    assertEquals(Collections.emptyList(), index.search("b", null, 10));
+    assertEquals(Arrays.asList(1L, 4L), index.search("ann", null, 10));
+    // the status is kept
+    assertEquals(Collections.singletonList(4L), index.search("ann", UserStatus.ONLINE, 10));
+  }
+
+  @Test
+  public void load_changesMadeWhileLoadingWin() {
+    UsernameIndex loading = new UsernameIndex(new SimpleMeterRegistry());
+    // logged in and renamed before the loader read the user
+    loading.updateStatus(1L, UserStatus.ONLINE);
+    loading.rename(2L, "carla");
+
+    loading.load(1L, "anna", UserStatus.OFFLINE);
+    loading.load(2L, "Andreas", UserStatus.OFFLINE);
+    loading.markLoaded();
+
+    assertEquals(Collections.singletonList(1L), loading.search("an", UserStatus.ONLINE, 10));
+    assertEquals(Collections.singletonList(2L), loading.search("car", UserStatus.OFFLINE, 10));
+    assertEquals(2, loading.size());
+  }
+}